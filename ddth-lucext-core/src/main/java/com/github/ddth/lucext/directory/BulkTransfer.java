@@ -0,0 +1,607 @@
+package com.github.ddth.lucext.directory;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Copy a whole commit point between {@link Directory}s (typically between a {@link LucextDirectory} and a local
+ * {@link org.apache.lucene.store.FSDirectory}, in either direction).
+ *
+ * <p>
+ * Design:
+ * <ul>
+ * <li>Many files are copied at once (see {@link #getNumFileThreads()}). Within a file, many blocks are in flight at
+ * once (see {@link #getNumBlockThreads()} and {@link #getMaxBlocksInFlightPerFile()}) when the source and/or the
+ * destination is a {@link LucextDirectory}.</li>
+ * <li>The segments file of the commit point is copied last, so that the destination never sees an incomplete
+ * commit.</li>
+ * <li>Files that already exist at the destination with the same length and checksum are skipped, hence an interrupted
+ * transfer can be resumed by simply running it again.</li>
+ * <li>Each copied file is verified against the checksum stored in its codec footer while being streamed.</li>
+ * <li>When the destination is a {@link LucextDirectory}, a file's metadata is written only after all of its blocks
+ * have been written; when the destination is any other directory, a file is written under a temporary name then
+ * renamed. Partially copied files are therefore never visible at the destination, and are removed if the copy
+ * fails.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class BulkTransfer implements AutoCloseable {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(BulkTransfer.class);
+
+    public final static int DEFAULT_NUM_FILE_THREADS = 4;
+    public final static int DEFAULT_NUM_BLOCK_THREADS = 32;
+    public final static int DEFAULT_MAX_BLOCKS_IN_FLIGHT_PER_FILE = 16;
+    public final static int DEFAULT_CHUNK_SIZE = LucextDirectory.DEFAULT_BLOCK_SIZE;
+    public final static String TEMP_FILE_SUFFIX = ".bulk";
+
+    private int numFileThreads = DEFAULT_NUM_FILE_THREADS;
+    private int numBlockThreads = DEFAULT_NUM_BLOCK_THREADS;
+    private int maxBlocksInFlightPerFile = DEFAULT_MAX_BLOCKS_IN_FLIGHT_PER_FILE;
+    private ExecutorService fileExecutor, blockExecutor;
+
+    /**
+     * Number of files being copied concurrently, default value {@link #DEFAULT_NUM_FILE_THREADS}.
+     *
+     * @return
+     */
+    public int getNumFileThreads() {
+        return numFileThreads;
+    }
+
+    /**
+     * Number of files being copied concurrently, default value {@link #DEFAULT_NUM_FILE_THREADS}.
+     *
+     * @param numFileThreads
+     * @return
+     */
+    public BulkTransfer setNumFileThreads(int numFileThreads) {
+        this.numFileThreads = numFileThreads > 0 ? numFileThreads : DEFAULT_NUM_FILE_THREADS;
+        return this;
+    }
+
+    /**
+     * Number of threads reading/writing blocks from/to {@link LucextDirectory}s, default value
+     * {@link #DEFAULT_NUM_BLOCK_THREADS}.
+     *
+     * @return
+     */
+    public int getNumBlockThreads() {
+        return numBlockThreads;
+    }
+
+    /**
+     * Number of threads reading/writing blocks from/to {@link LucextDirectory}s, default value
+     * {@link #DEFAULT_NUM_BLOCK_THREADS}.
+     *
+     * @param numBlockThreads
+     * @return
+     */
+    public BulkTransfer setNumBlockThreads(int numBlockThreads) {
+        this.numBlockThreads = numBlockThreads > 0 ? numBlockThreads : DEFAULT_NUM_BLOCK_THREADS;
+        return this;
+    }
+
+    /**
+     * Max number of outstanding block reads/writes per file, default value
+     * {@link #DEFAULT_MAX_BLOCKS_IN_FLIGHT_PER_FILE}.
+     *
+     * @return
+     */
+    public int getMaxBlocksInFlightPerFile() {
+        return maxBlocksInFlightPerFile;
+    }
+
+    /**
+     * Max number of outstanding block reads/writes per file, default value
+     * {@link #DEFAULT_MAX_BLOCKS_IN_FLIGHT_PER_FILE}.
+     *
+     * @param maxBlocksInFlightPerFile
+     * @return
+     */
+    public BulkTransfer setMaxBlocksInFlightPerFile(int maxBlocksInFlightPerFile) {
+        this.maxBlocksInFlightPerFile =
+                maxBlocksInFlightPerFile > 0 ? maxBlocksInFlightPerFile : DEFAULT_MAX_BLOCKS_IN_FLIGHT_PER_FILE;
+        return this;
+    }
+
+    /**
+     * Initializing method.
+     *
+     * @return
+     */
+    public BulkTransfer init() {
+        if (fileExecutor == null) {
+            fileExecutor = Executors.newFixedThreadPool(numFileThreads);
+        }
+        if (blockExecutor == null) {
+            blockExecutor = Executors.newFixedThreadPool(numBlockThreads);
+        }
+        return this;
+    }
+
+    /**
+     * Cleanup method.
+     */
+    public void destroy() {
+        for (ExecutorService es : new ExecutorService[] { fileExecutor, blockExecutor }) {
+            if (es != null) {
+                try {
+                    es.shutdownNow();
+                } catch (Exception e) {
+                    LOGGER.warn(e.getMessage(), e);
+                }
+            }
+        }
+        fileExecutor = null;
+        blockExecutor = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Result of a transfer.
+     */
+    public static class Result {
+        private AtomicLong filesCopied = new AtomicLong(0), filesSkipped = new AtomicLong(0), bytesCopied = new AtomicLong(
+                0);
+        private long durationMs;
+
+        /**
+         * Number of files copied.
+         *
+         * @return
+         */
+        public long getFilesCopied() {
+            return filesCopied.get();
+        }
+
+        /**
+         * Number of files skipped because they already exist at the destination.
+         *
+         * @return
+         */
+        public long getFilesSkipped() {
+            return filesSkipped.get();
+        }
+
+        /**
+         * Number of bytes copied.
+         *
+         * @return
+         */
+        public long getBytesCopied() {
+            return bytesCopied.get();
+        }
+
+        /**
+         * Duration of the transfer, in milliseconds.
+         *
+         * @return
+         */
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "{filesCopied:" + getFilesCopied() + ",filesSkipped:" + getFilesSkipped() + ",bytesCopied:"
+                    + getBytesCopied() + ",durationMs:" + durationMs + "}";
+        }
+    }
+
+    /**
+     * Copy the latest commit point from source to destination.
+     *
+     * @param src
+     * @param dest
+     * @return
+     * @throws IOException
+     */
+    public Result transfer(Directory src, Directory dest) throws IOException {
+        return transfer(src, dest, SegmentInfos.readLatestCommit(src));
+    }
+
+    /**
+     * Copy a commit point from source to destination.
+     *
+     * @param src
+     * @param dest
+     * @param segmentsFileName name of the segments file identifying the commit point
+     * @return
+     * @throws IOException
+     */
+    public Result transfer(Directory src, Directory dest, String segmentsFileName) throws IOException {
+        return transfer(src, dest, SegmentInfos.readCommit(src, segmentsFileName));
+    }
+
+    private Result transfer(Directory src, Directory dest, SegmentInfos commit) throws IOException {
+        if (fileExecutor == null || blockExecutor == null) {
+            throw new IllegalStateException("BulkTransfer has not been initialized!");
+        }
+        long t1 = System.currentTimeMillis();
+        Result result = new Result();
+        String segmentsFileName = commit.getSegmentsFileName();
+        // list the destination once, rather than once per file
+        Set<String> destFiles = new HashSet<>(Arrays.asList(dest.listAll()));
+        List<Future<?>> futures = new ArrayList<>();
+        for (String name : commit.files(false)) {
+            futures.add(fileExecutor.submit(() -> {
+                transferFile(src, dest, destFiles, name, result);
+                return null;
+            }));
+        }
+        awaitAll(futures);
+        transferFile(src, dest, destFiles, segmentsFileName, result);
+        dest.sync(commit.files(true));
+        dest.syncMetaData();
+        result.durationMs = System.currentTimeMillis() - t1;
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Transferred commit [" + segmentsFileName + "]: " + result);
+        }
+        return result;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ThreadInterruptedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Wait for all futures to complete; on the first failure, cancel the remaining ones and rethrow.
+     */
+    private static void awaitAll(Collection<? extends Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check if a file at the destination is identical (same length and footer checksum) to the source one.
+     */
+    private static boolean isUpToDate(Directory src, Directory dest, String name, long size) throws IOException {
+        try {
+            if (dest.fileLength(name) != size) {
+                return false;
+            }
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return false;
+        }
+        if (size < CodecUtil.footerLength()) {
+            return false;
+        }
+        try (IndexInput srcInput = src.openInput(name, IOContext.READONCE);
+                IndexInput destInput = dest.openInput(name, IOContext.READONCE)) {
+            return CodecUtil.retrieveChecksum(srcInput) == CodecUtil.retrieveChecksum(destInput);
+        } catch (CorruptIndexException e) {
+            return false;
+        }
+    }
+
+    private void transferFile(Directory src, Directory dest, Set<String> destFiles, String name, Result result)
+            throws IOException {
+        long size = src.fileLength(name);
+        if (isUpToDate(src, dest, name, size)) {
+            result.filesSkipped.incrementAndGet();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("File [" + name + "] is up-to-date at destination, skipped.");
+            }
+            return;
+        }
+        if (destFiles.contains(name)) {
+            dest.deleteFile(name);
+        }
+
+        long t1 = System.currentTimeMillis();
+        LucextDirectory lucextSrc = src instanceof LucextDirectory ? (LucextDirectory) src : null;
+        LucextDirectory lucextDest = dest instanceof LucextDirectory ? (LucextDirectory) dest : null;
+        int chunkSize = lucextDest != null ?
+                lucextDest.getBlockSize() :
+                (lucextSrc != null ? lucextSrc.getBlockSize() : DEFAULT_CHUNK_SIZE);
+        FooterVerifier verifier = new FooterVerifier(name, size);
+        try (ChunkReader reader = lucextSrc != null && lucextSrc.getBlockSize() == chunkSize ?
+                new LucextChunkReader(lucextSrc, name, size, chunkSize) :
+                new InputChunkReader(src.openInput(name, IOContext.READONCE), size, chunkSize)) {
+            if (lucextDest != null) {
+                writeToLucextDirectory(lucextDest, name, size, chunkSize, reader, verifier);
+            } else {
+                writeToDirectory(dest, destFiles, name, size, chunkSize, reader, verifier);
+            }
+        }
+        result.filesCopied.incrementAndGet();
+        result.bytesCopied.addAndGet(size);
+        if (LOGGER.isDebugEnabled()) {
+            long t2 = System.currentTimeMillis();
+            LOGGER.debug("Transferred file [" + name + "/" + size + "] in " + (t2 - t1) + " ms");
+        }
+    }
+
+    private void writeToLucextDirectory(LucextDirectory dest, String name, long size, int chunkSize,
+            ChunkReader reader, FooterVerifier verifier) throws IOException {
+        FileInfo fileInfo = dest.newFileInfo(name).setSize(size);
+        int numChunks = (int) ((size + chunkSize - 1) / chunkSize);
+        Deque<Future<?>> pendingWrites = new ArrayDeque<>();
+        boolean added = false;
+        try {
+            for (int i = 0; i < numChunks; i++) {
+                final int blockNum = i;
+                byte[] chunk = reader.read(blockNum);
+                verifier.update(chunk, (long) blockNum * chunkSize);
+                while (pendingWrites.size() >= maxBlocksInFlightPerFile) {
+                    await(pendingWrites.poll());
+                }
+                pendingWrites.add(blockExecutor.submit(() -> {
+                    dest.writeFileBlock(fileInfo, blockNum, chunk);
+                    return null;
+                }));
+            }
+            while (!pendingWrites.isEmpty()) {
+                await(pendingWrites.poll());
+            }
+            verifier.verify();
+            // metadata is written last, so a partially copied file is never visible
+            dest.addFileInfo(fileInfo);
+            added = true;
+        } finally {
+            if (!added) {
+                discardPartialFile(dest, fileInfo, pendingWrites);
+            }
+        }
+    }
+
+    /**
+     * Remove the blocks already written for a file whose copy has failed. In-flight writes (at most
+     * {@link #getMaxBlocksInFlightPerFile()}) are waited for first, so that no block is written after the file's data
+     * has been removed.
+     */
+    private void discardPartialFile(LucextDirectory dest, FileInfo fileInfo, Collection<Future<?>> pendingWrites) {
+        for (Future<?> future : pendingWrites) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (CancellationException | ExecutionException e) {
+                // the write has failed or never run, nothing to wait for
+            }
+        }
+        try {
+            dest.discardFileData(fileInfo);
+        } catch (Exception e) {
+            LOGGER.warn("Error while removing partially copied file [" + fileInfo.getName() + "/" + fileInfo.getId()
+                    + "]: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeToDirectory(Directory dest, Set<String> destFiles, String name, long size, int chunkSize,
+            ChunkReader reader, FooterVerifier verifier) throws IOException {
+        String tempName = name + TEMP_FILE_SUFFIX;
+        if (destFiles.contains(tempName)) {
+            dest.deleteFile(tempName);
+        }
+        int numChunks = (int) ((size + chunkSize - 1) / chunkSize);
+        boolean renamed = false;
+        try {
+            try (IndexOutput output = dest.createOutput(tempName, IOContext.DEFAULT)) {
+                for (int i = 0; i < numChunks; i++) {
+                    byte[] chunk = reader.read(i);
+                    verifier.update(chunk, (long) i * chunkSize);
+                    output.writeBytes(chunk, 0, chunk.length);
+                }
+            }
+            verifier.verify();
+            dest.rename(tempName, name);
+            renamed = true;
+        } finally {
+            if (!renamed) {
+                IOUtils.deleteFilesIgnoringExceptions(dest, tempName);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Read a file chunk-by-chunk, in order.
+     */
+    private interface ChunkReader extends AutoCloseable {
+        /**
+         * Read a chunk of data. Chunks are read in order; the last chunk may be shorter than chunk-size.
+         */
+        byte[] read(int chunkNum) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Read chunks sequentially from an {@link IndexInput}.
+     */
+    private static class InputChunkReader implements ChunkReader {
+        private IndexInput input;
+        private long size;
+        private int chunkSize;
+
+        InputChunkReader(IndexInput input, long size, int chunkSize) {
+            this.input = input;
+            this.size = size;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public byte[] read(int chunkNum) throws IOException {
+            long offset = (long) chunkNum * chunkSize;
+            byte[] chunk = new byte[(int) Math.min(chunkSize, size - offset)];
+            input.readBytes(chunk, 0, chunk.length);
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Read blocks from a {@link LucextDirectory} in batches of {@link LucextDirectory#getReadAheadBlocks()} blocks
+     * (see {@link LucextDirectory#readFileBlocks(FileInfo, int, int)}), keeping up to
+     * {@link #maxBlocksInFlightPerFile} blocks in flight.
+     */
+    private class LucextChunkReader implements ChunkReader {
+        private LucextDirectory src;
+        private FileInfo fileInfo;
+        private long size;
+        private int chunkSize, numChunks, batchSize, numBatches, nextBatchToSubmit = 0;
+        private Map<Integer, Future<List<byte[]>>> inFlight = new HashMap<>();
+        private int currentBatchNum = -1;
+        private List<byte[]> currentBatch;
+
+        LucextChunkReader(LucextDirectory src, String name, long size, int chunkSize) throws IOException {
+            this.src = src;
+            this.fileInfo = src.getFileInfo(name);
+            if (fileInfo == null) {
+                throw new FileNotFoundException("File [" + name + "] not found!");
+            }
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.numChunks = (int) ((size + chunkSize - 1) / chunkSize);
+            this.batchSize = Math.max(1, src.getReadAheadBlocks());
+            this.numBatches = (numChunks + batchSize - 1) / batchSize;
+        }
+
+        private Callable<List<byte[]>> readBatch(int batchNum) {
+            int startBlockNum = batchNum * batchSize;
+            int count = Math.min(batchSize, numChunks - startBlockNum);
+            return () -> src.readFileBlocks(fileInfo, startBlockNum, count);
+        }
+
+        @Override
+        public byte[] read(int chunkNum) throws IOException {
+            int batchNum = chunkNum / batchSize;
+            if (batchNum != currentBatchNum) {
+                int maxBatchesInFlight = Math.max(1, maxBlocksInFlightPerFile / batchSize);
+                while (nextBatchToSubmit < numBatches && nextBatchToSubmit < batchNum + maxBatchesInFlight) {
+                    int toSubmit = nextBatchToSubmit++;
+                    inFlight.put(toSubmit, blockExecutor.submit(readBatch(toSubmit)));
+                }
+                Future<List<byte[]>> future = inFlight.remove(batchNum);
+                try {
+                    currentBatch = future != null ? await(future) : readBatch(batchNum).call();
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+                currentBatchNum = batchNum;
+            }
+            byte[] block = currentBatch.get(chunkNum - batchNum * batchSize);
+            if (block == null) {
+                throw new IOException(
+                        "Block [" + chunkNum + "] of file [" + fileInfo.getId() + ":" + fileInfo.getName()
+                                + "] not found!");
+            }
+            int length = (int) Math.min(chunkSize, size - (long) chunkNum * chunkSize);
+            return block.length == length ? block : Arrays.copyOf(block, length);
+        }
+
+        @Override
+        public void close() {
+            inFlight.values().forEach(f -> f.cancel(false));
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Verify a file's content against the checksum stored in its codec footer, while the file is being streamed.
+     */
+    private static class FooterVerifier {
+        private String name;
+        private long size, checksumOffset;
+        private CRC32 crc = new CRC32();
+        private byte[] storedChecksum = new byte[Long.BYTES];
+
+        FooterVerifier(String name, long size) {
+            this.name = name;
+            this.size = size;
+            this.checksumOffset = size - Long.BYTES;
+        }
+
+        void update(byte[] chunk, long offset) {
+            if (size < CodecUtil.footerLength()) {
+                return;
+            }
+            int crcLength = (int) Math.max(0, Math.min(chunk.length, checksumOffset - offset));
+            crc.update(chunk, 0, crcLength);
+            for (int i = crcLength; i < chunk.length; i++) {
+                storedChecksum[(int) (offset + i - checksumOffset)] = chunk[i];
+            }
+        }
+
+        void verify() throws IOException {
+            if (size < CodecUtil.footerLength()) {
+                return;
+            }
+            long expected = 0;
+            for (byte b : storedChecksum) {
+                expected = (expected << 8) | (b & 0xFF);
+            }
+            if (expected != crc.getValue()) {
+                throw new CorruptIndexException(
+                        "Checksum mismatch: expected=" + expected + ", actual=" + crc.getValue(), name);
+            }
+        }
+    }
+}
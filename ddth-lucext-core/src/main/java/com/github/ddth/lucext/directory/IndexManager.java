@@ -1,17 +1,17 @@
 package com.github.ddth.lucext.directory;
 
-import javassist.util.proxy.ProxyFactory;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.SleepingLockWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -28,6 +28,11 @@ import java.util.concurrent.atomic.AtomicLong;
  * {@link #getBackgroundCommitIndexPeriodMs()}.</li>
  * <li>Near-real-time {@link DirectoryReader} and {@link IndexSearcher}. See
  * {@link #isNrtIndexSearcher()}</li>
+ * <li>Reference-counted searchers: {@link #acquireIndexSearcher()} / {@link #releaseIndexSearcher(IndexSearcher)}
+ * (backed by Lucene's {@link SearcherManager}), so that in-flight searches finish on the old reader while new searches
+ * use the refreshed one.</li>
+ * <li>Standby writer: wait for the index's write lock to be released by another writer. See
+ * {@link #getWriteLockTimeoutMs()}.</li>
  * </ul>
  *
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
@@ -41,8 +46,7 @@ public class IndexManager implements AutoCloseable {
     private IndexWriterConfig indexWriterConfig;
 
     private IndexWriter indexWriter;
-    private DirectoryReader directoryReader;
-    private IndexSearcher indexSearcher;
+    private SearcherManager searcherManager;
 
     private ScheduledExecutorService ses;
     private boolean myOwnScheduledExecutorService = false;
@@ -55,6 +59,10 @@ public class IndexManager implements AutoCloseable {
 
     private boolean nrtIndexSearcher = true;
 
+    public final static long DEFAULT_WRITE_LOCK_TIMEOUT_MS = 0;
+    public final static long DEFAULT_WRITE_LOCK_POLL_INTERVAL_MS = 1000;
+    private long writeLockTimeoutMs = DEFAULT_WRITE_LOCK_TIMEOUT_MS;
+
     public IndexManager(Directory directory) {
         this.directory = directory;
     }
@@ -134,7 +142,7 @@ public class IndexManager implements AutoCloseable {
         if (backgroundRefreshIndexSearcherPeriodMs > 0) {
             backgroundRefreshIndexSearcher = ses.scheduleWithFixedDelay(() -> {
                 try {
-                    indexSearcher = upToDateIndexSeacher();
+                    refreshIfChanged();
                 } catch (IOException e) {
                     LOGGER.error(e.getMessage(), e);
                 }
@@ -235,6 +243,50 @@ public class IndexManager implements AutoCloseable {
         return this;
     }
 
+    /**
+     * If the index's write lock is held by another writer, {@link #init()} keeps retrying to obtain it for up to this
+     * period ({@code -1} to wait forever) before giving up. Default value {@link #DEFAULT_WRITE_LOCK_TIMEOUT_MS} (do
+     * not wait).
+     *
+     * <p>
+     * With lease locks (see {@link LucextDirectory#getLockLeaseMs()}), a standby {@link IndexManager} configured to
+     * wait takes over at most one lease period (plus {@link #DEFAULT_WRITE_LOCK_POLL_INTERVAL_MS}) after the active
+     * writer dies.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getWriteLockTimeoutMs() {
+        return writeLockTimeoutMs;
+    }
+
+    /**
+     * If the index's write lock is held by another writer, {@link #init()} keeps retrying to obtain it for up to this
+     * period ({@code -1} to wait forever) before giving up. Default value {@link #DEFAULT_WRITE_LOCK_TIMEOUT_MS} (do
+     * not wait).
+     *
+     * <p>
+     * With lease locks (see {@link LucextDirectory#getLockLeaseMs()}), a standby {@link IndexManager} configured to
+     * wait takes over at most one lease period (plus {@link #DEFAULT_WRITE_LOCK_POLL_INTERVAL_MS}) after the active
+     * writer dies.
+     * </p>
+     *
+     * @param writeLockTimeoutMs
+     * @return
+     * @since 1.0.1
+     */
+    public IndexManager setWriteLockTimeoutMs(long writeLockTimeoutMs) {
+        if (indexWriter == null) {
+            this.writeLockTimeoutMs = writeLockTimeoutMs < 0 ?
+                    SleepingLockWrapper.LOCK_OBTAIN_WAIT_FOREVER :
+                    writeLockTimeoutMs;
+        } else {
+            LOGGER.warn("IndexManager has been initialized, cannot change this configuration.");
+        }
+        return this;
+    }
+
     private ScheduledFuture<?> backgroundRefreshIndexSearcher, backgroundCommitIndex;
 
     private void createIndexObjects() throws IOException {
@@ -242,9 +294,14 @@ public class IndexManager implements AutoCloseable {
             indexWriterConfig = new IndexWriterConfig();
             indexWriterConfig.setCommitOnClose(true);
         }
-        indexWriter = createIndexWriter(directory, indexWriterConfig);
-        directoryReader = createDirectoryReaderIfChanged(directoryReader, indexWriter);
-        indexSearcher = createIndexSearcher(directoryReader);
+        Directory dir = writeLockTimeoutMs != 0 ?
+                new SleepingLockWrapper(directory, writeLockTimeoutMs,
+                        writeLockTimeoutMs > 0 ?
+                                Math.min(writeLockTimeoutMs, DEFAULT_WRITE_LOCK_POLL_INTERVAL_MS) :
+                                DEFAULT_WRITE_LOCK_POLL_INTERVAL_MS) :
+                directory;
+        indexWriter = createIndexWriter(dir, indexWriterConfig);
+        searcherManager = new SearcherManager(indexWriter, null);
     }
 
     private void initBackgroundTasks() {
@@ -297,7 +354,11 @@ public class IndexManager implements AutoCloseable {
                 ses = null;
             }
         }
-        closeObjs(indexWriter, directory);
+        if (searcherManager != null) {
+            releaseHeldIndexSearcher();
+        }
+        closeObjs(searcherManager, indexWriter, directory);
+        searcherManager = null;
         indexWriter = null;
         directory = null;
     }
@@ -311,74 +372,119 @@ public class IndexManager implements AutoCloseable {
     }
 
     /*----------------------------------------------------------------------*/
-    private IndexWriter createIndexWriter(Directory directory, IndexWriterConfig iwc) {
-        ProxyFactory pf = new ProxyFactory();
-        pf.setSuperclass(IndexWriter.class);
-        try {
-            IndexWriter indexWriter = (IndexWriter) pf
-                    .create(new Class<?>[] { Directory.class, IndexWriterConfig.class },
-                            new Object[] { directory, iwc }, (self, thisMethod, proceed, args) -> {
-                                try {
-                                    return proceed.invoke(self, args);
-                                } finally {
-                                    String name = thisMethod.getName();
-                                    if (name.startsWith("addDocument") || name.startsWith("addIndex") || name
-                                            .startsWith("deleteDocument") || name.startsWith("deleteAll") || name
-                                            .startsWith("updateDoc") || (name.startsWith("update") && name
-                                            .endsWith("DocValue"))) {
-                                        markIndexChanged();
-                                    }
-                                }
-                            });
-            return indexWriter;
-        } catch (NoSuchMethodException | IllegalArgumentException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Index changes are tracked with the sequence numbers {@link IndexWriter} assigns to every write operation (see
+     * {@link IndexWriter#getMaxCompletedSequenceNumber()}), so a plain {@link IndexWriter} is used.
+     */
+    private IndexWriter createIndexWriter(Directory directory, IndexWriterConfig iwc) throws IOException {
+        IndexWriter indexWriter = new IndexWriter(directory, iwc);
+        refreshedSequenceNumber = indexWriter.getMaxCompletedSequenceNumber();
+        return indexWriter;
     }
 
     /**
-     * This method creates new {@link DirectoryReader} if the index has changed, otherwise the old
-     * one is returned.
+     * Acquire the current {@link IndexSearcher} (refreshed first if in near-real-time mode and the index has changed).
+     * The searcher's reader stays open until it is released with {@link #releaseIndexSearcher(IndexSearcher)}, even if
+     * a newer searcher is made current in the meantime.
+     *
+     * <p>
+     * Usage:
+     * </p>
+     *
+     * <pre>
+     * IndexSearcher searcher = indexManager.acquireIndexSearcher();
+     * try {
+     *     searcher.search(...);
+     * } finally {
+     *     indexManager.releaseIndexSearcher(searcher);
+     * }
+     * </pre>
      *
-     * @param oldDirectoryReader
-     * @param indexWriter
      * @return
      * @throws IOException
+     * @since 1.0.1
      */
-    @SuppressWarnings({ "resource" })
-    private DirectoryReader createDirectoryReaderIfChanged(DirectoryReader oldDirectoryReader, IndexWriter indexWriter)
-            throws IOException {
-        DirectoryReader dirReader = oldDirectoryReader != null ?
-                DirectoryReader.openIfChanged(oldDirectoryReader, indexWriter) :
-                DirectoryReader.open(indexWriter);
-        if (dirReader == null) {
-            dirReader = oldDirectoryReader;
+    public IndexSearcher acquireIndexSearcher() throws IOException {
+        if (nrtIndexSearcher) {
+            refreshIfChanged();
         }
-        return dirReader;
+        return searcherManager.acquire();
     }
 
-    private IndexSearcher createIndexSearcher(DirectoryReader directoryReader) {
-        return new IndexSearcher(directoryReader);
+    /**
+     * Release an {@link IndexSearcher} obtained via {@link #acquireIndexSearcher()}. The searcher must not be used
+     * after this call.
+     *
+     * @param indexSearcher
+     * @throws IOException
+     * @since 1.0.1
+     */
+    public void releaseIndexSearcher(IndexSearcher indexSearcher) throws IOException {
+        if (indexSearcher != null) {
+            searcherManager.release(indexSearcher);
+        }
     }
 
+    /*
+     * Searcher last returned by getIndexSearcher(), IndexManager holds one reference to it.
+     */
+    private IndexSearcher heldIndexSearcher;
+
     /**
      * Get the associated {@link DirectoryReader}.
      *
+     * <p>
+     * Note: see {@link #getIndexSearcher()}, the returned reader is only guaranteed to stay open until the index has
+     * been refreshed and this method (or {@link #getIndexSearcher()}) is called again.
+     * </p>
+     *
      * @return
      * @throws IOException
+     * @deprecated since 1.0.1, unsafe if the reader is used across a refresh: use {@link #acquireIndexSearcher()} /
+     *         {@link #releaseIndexSearcher(IndexSearcher)} instead.
      */
+    @Deprecated
     public DirectoryReader getDirectoryReader() throws IOException {
-        return nrtIndexSearcher ? upToDateDirectoryReader() : directoryReader;
+        return (DirectoryReader) getIndexSearcher().getIndexReader();
     }
 
     /**
      * Get the associated {@link IndexSearcher}.
      *
+     * <p>
+     * Note: {@link IndexManager} holds one reference to the returned searcher, and releases it once the index has been
+     * refreshed and a newer searcher is returned by a later call. A search still running on the old searcher at that
+     * point may fail with {@link org.apache.lucene.store.AlreadyClosedException}.
+     * </p>
+     *
      * @return
      * @throws IOException
+     * @deprecated since 1.0.1, unsafe if the searcher is used across a refresh: use {@link #acquireIndexSearcher()} /
+     *         {@link #releaseIndexSearcher(IndexSearcher)} instead.
      */
-    public IndexSearcher getIndexSearcher() throws IOException {
-        return nrtIndexSearcher ? upToDateIndexSeacher() : indexSearcher;
+    @Deprecated
+    synchronized public IndexSearcher getIndexSearcher() throws IOException {
+        IndexSearcher indexSearcher = acquireIndexSearcher();
+        if (indexSearcher == heldIndexSearcher) {
+            // a reference is already held
+            releaseIndexSearcher(indexSearcher);
+        } else {
+            IndexSearcher previous = heldIndexSearcher;
+            heldIndexSearcher = indexSearcher;
+            // the previous searcher has been swapped out by a refresh
+            releaseIndexSearcher(previous);
+        }
+        return indexSearcher;
+    }
+
+    synchronized private void releaseHeldIndexSearcher() {
+        try {
+            releaseIndexSearcher(heldIndexSearcher);
+        } catch (Exception e) {
+            LOGGER.warn(e.getMessage(), e);
+        } finally {
+            heldIndexSearcher = null;
+        }
     }
 
     /**
@@ -393,9 +499,19 @@ public class IndexManager implements AutoCloseable {
     /*----------------------------------------------------------------------*/
     private AtomicLong changeCounter = new AtomicLong(0);
 
+    /*
+     * Sequence number of the index writer when the directory reader was last refreshed.
+     */
+    private volatile long refreshedSequenceNumber = 0;
+
     /**
      * Mark that index has changed.
      *
+     * <p>
+     * Note: changes made through {@link #getIndexWriter()} are detected automatically, this method is only needed for
+     * changes made by other means.
+     * </p>
+     *
      * @return
      */
     public IndexManager markIndexChanged() {
@@ -410,26 +526,24 @@ public class IndexManager implements AutoCloseable {
      * @return
      */
     public boolean isIndexChanged() {
-        return changeCounter.get() > 0;
+        IndexWriter indexWriter = this.indexWriter;
+        return changeCounter.get() > 0
+                || indexWriter != null && indexWriter.getMaxCompletedSequenceNumber() > refreshedSequenceNumber;
     }
 
-    private IndexSearcher upToDateIndexSeacher() throws IOException {
-        DirectoryReader oldDirReader = directoryReader;
-        DirectoryReader newDirReader = upToDateDirectoryReader();
-        if (newDirReader != oldDirReader) {
-            indexSearcher = createIndexSearcher(newDirReader);
-        }
-        return indexSearcher;
-    }
-
-    synchronized private DirectoryReader upToDateDirectoryReader() throws IOException {
-        long changeToken = changeCounter.get();
-        DirectoryReader oldDirReader = directoryReader;
-        directoryReader = createDirectoryReaderIfChanged(oldDirReader, indexWriter);
-        if (oldDirReader != null && oldDirReader != directoryReader) {
-            oldDirReader.close();
+    /**
+     * Refresh the current searcher if the index has changed. The old searcher's reader is closed once all searchers
+     * acquired on it are released (see {@link SearcherManager}). If another thread is refreshing, this method does
+     * not wait.
+     */
+    private void refreshIfChanged() throws IOException {
+        if (isIndexChanged()) {
+            long changeToken = changeCounter.get();
+            long sequenceNumber = indexWriter.getMaxCompletedSequenceNumber();
+            if (searcherManager.maybeRefresh()) {
+                changeCounter.compareAndSet(changeToken, 0);
+                refreshedSequenceNumber = sequenceNumber;
+            }
         }
-        changeCounter.compareAndSet(changeToken, 0);
-        return directoryReader;
     }
 }
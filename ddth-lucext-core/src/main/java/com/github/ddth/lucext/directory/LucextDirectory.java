@@ -2,15 +2,27 @@ package com.github.ddth.lucext.directory;
 
 import com.github.ddth.cacheadapter.ICache;
 import com.github.ddth.cacheadapter.ICacheFactory;
+import com.github.ddth.lucext.utils.IdUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.store.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
@@ -41,12 +53,16 @@ public abstract class LucextDirectory extends BaseDirectory {
          * {@inheritDoc}
          */
         @Override
-        public Lock obtainLock(Directory dir, String lockName) {
+        public Lock obtainLock(Directory dir, String lockName) throws IOException {
             if (!(dir instanceof LucextDirectory)) {
                 throw new IllegalArgumentException(
                         "Expect argument of type [" + LucextDirectory.class.getName() + "]!");
             }
-            return ((LucextDirectory) dir).createLock(lockName);
+            Lock lock = ((LucextDirectory) dir).createLock(lockName);
+            if (lock instanceof LucextLock && !((LucextLock) lock).isLocked()) {
+                throw new LockObtainFailedException("Lock [" + lockName + "] is held by another source!");
+            }
+            return lock;
         }
     }
 
@@ -55,9 +71,34 @@ public abstract class LucextDirectory extends BaseDirectory {
     public final static int DEFAULT_BLOCK_SIZE = 64 * 1024; // 64kb
     private int blockSize = DEFAULT_BLOCK_SIZE;
 
+    public final static int DEFAULT_READ_AHEAD_BLOCKS = 1;
+    private int readAheadBlocks = DEFAULT_READ_AHEAD_BLOCKS;
+
+    public final static int DEFAULT_READ_CONCURRENCY = 1;
+    private int readConcurrency = DEFAULT_READ_CONCURRENCY;
+
     private ICacheFactory cacheFactory;
     private String cacheName;
     private String cacheKeyAllFiles = "ALL_FILES";
+    private String cacheKeyMetadataGeneration = "METADATA_GENERATION";
+    private volatile ICache cache;
+
+    public final static long DEFAULT_NEAR_CACHE_MAX_BYTES = 64 * 1024 * 1024; // 64mb
+    public final static long DEFAULT_NEAR_CACHE_MUTABLE_TTL_MS = 0;
+    private long nearCacheMaxBytes = DEFAULT_NEAR_CACHE_MAX_BYTES;
+    private long nearCacheMutableTtlMs = DEFAULT_NEAR_CACHE_MUTABLE_TTL_MS;
+    private volatile NearCache nearCache;
+    public final static long DEFAULT_LOCK_LEASE_MS = 10000;
+    private long lockLeaseMs = DEFAULT_LOCK_LEASE_MS;
+    private ScheduledExecutorService scheduledExecutor;
+
+    public final static int DEFAULT_NUM_ASYNC_THREADS = 16;
+    private int numAsyncThreads = DEFAULT_NUM_ASYNC_THREADS;
+    private ExecutorService asyncExecutor;
+    private boolean myOwnAsyncExecutor = false;
+
+    private AtomicLong statsL1Hits = new AtomicLong(0), statsL2Hits = new AtomicLong(0), statsMisses = new AtomicLong(
+            0);
 
     public LucextDirectory() {
         super(LucextLockFactory.INSTANCE);
@@ -83,13 +124,195 @@ public abstract class LucextDirectory extends BaseDirectory {
         return this;
     }
 
+    /**
+     * When a {@link LucextIndexInput} reads a file sequentially, it fetches this number of blocks at once (see
+     * {@link #readFileBlocks(FileInfo, int, int)}). Default value {@link #DEFAULT_READ_AHEAD_BLOCKS} (no read-ahead);
+     * implementations that support fetching multiple blocks in one request use a bigger default value.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getReadAheadBlocks() {
+        return readAheadBlocks;
+    }
+
+    /**
+     * When a {@link LucextIndexInput} reads a file sequentially, it fetches this number of blocks at once (see
+     * {@link #readFileBlocks(FileInfo, int, int)}). Default value {@link #DEFAULT_READ_AHEAD_BLOCKS} (no read-ahead);
+     * implementations that support fetching multiple blocks in one request use a bigger default value.
+     *
+     * @param readAheadBlocks
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setReadAheadBlocks(int readAheadBlocks) {
+        this.readAheadBlocks = readAheadBlocks <= 0 ? DEFAULT_READ_AHEAD_BLOCKS : readAheadBlocks;
+        return this;
+    }
+
+    /**
+     * Max number of concurrent reads (see {@link #readFileBlocksAsync(FileInfo, int, int)}) issued by a
+     * {@link LucextIndexInput}. If greater than {@code 1}, an input reading a file sequentially keeps up to this
+     * number of runs of {@link #getReadAheadBlocks()} blocks in flight while the current block is consumed, instead of
+     * fetching one run in a blocking call. Default value {@link #DEFAULT_READ_CONCURRENCY} (no concurrent reads); implementations with an
+     * asynchronous storage API use a bigger default value.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getReadConcurrency() {
+        return readConcurrency;
+    }
+
+    /**
+     * Max number of concurrent reads (see {@link #readFileBlocksAsync(FileInfo, int, int)}) issued by a
+     * {@link LucextIndexInput}. If greater than {@code 1}, an input reading a file sequentially keeps up to this
+     * number of runs of {@link #getReadAheadBlocks()} blocks in flight while the current block is consumed, instead of
+     * fetching one run in a blocking call. Default value {@link #DEFAULT_READ_CONCURRENCY} (no concurrent reads); implementations with an
+     * asynchronous storage API use a bigger default value.
+     *
+     * @param readConcurrency
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setReadConcurrency(int readConcurrency) {
+        this.readConcurrency = readConcurrency <= 0 ? DEFAULT_READ_CONCURRENCY : readConcurrency;
+        return this;
+    }
+
+    /**
+     * Lease duration of locks, for implementations that support lease locks (see {@link LucextLock}): a lock held by a
+     * crashed process expires after this period. Default value {@link #DEFAULT_LOCK_LEASE_MS}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getLockLeaseMs() {
+        return lockLeaseMs;
+    }
+
+    /**
+     * Lease duration of locks, for implementations that support lease locks (see {@link LucextLock}): a lock held by a
+     * crashed process expires after this period. Default value {@link #DEFAULT_LOCK_LEASE_MS}.
+     *
+     * @param lockLeaseMs
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setLockLeaseMs(long lockLeaseMs) {
+        this.lockLeaseMs = lockLeaseMs > 0 ? lockLeaseMs : DEFAULT_LOCK_LEASE_MS;
+        return this;
+    }
+
+    /**
+     * {@link ScheduledExecutorService} for internal background jobs (e.g. renewing lock leases), created on demand.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    synchronized protected ScheduledExecutorService getScheduledExecutor() {
+        if (scheduledExecutor == null) {
+            scheduledExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, getClass().getSimpleName() + "-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduledExecutor;
+    }
+
+    /**
+     * Number of threads of the default {@link ExecutorService} that runs blocking SPI methods for the asynchronous
+     * SPI (see {@link #readFileBlockAsync(FileInfo, int)}), default value {@link #DEFAULT_NUM_ASYNC_THREADS}. Only used
+     * if no custom {@link ExecutorService} is supplied.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getNumAsyncThreads() {
+        return numAsyncThreads;
+    }
+
+    /**
+     * Number of threads of the default {@link ExecutorService} that runs blocking SPI methods for the asynchronous
+     * SPI (see {@link #readFileBlockAsync(FileInfo, int)}), default value {@link #DEFAULT_NUM_ASYNC_THREADS}. Only used
+     * if no custom {@link ExecutorService} is supplied.
+     *
+     * @param numAsyncThreads
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setNumAsyncThreads(int numAsyncThreads) {
+        this.numAsyncThreads = numAsyncThreads > 0 ? numAsyncThreads : DEFAULT_NUM_ASYNC_THREADS;
+        return this;
+    }
+
+    /**
+     * The {@link ExecutorService} that runs blocking SPI methods for the asynchronous SPI, created on demand.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    synchronized protected ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newFixedThreadPool(numAsyncThreads, r -> {
+                Thread t = new Thread(r, getClass().getSimpleName() + "-async");
+                t.setDaemon(true);
+                return t;
+            });
+            myOwnAsyncExecutor = true;
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * The {@link ExecutorService} that runs blocking SPI methods for the asynchronous SPI.
+     *
+     * @param asyncExecutor
+     * @return
+     * @since 1.0.1
+     */
+    synchronized public LucextDirectory setAsyncExecutor(ExecutorService asyncExecutor) {
+        if (this.asyncExecutor != null && myOwnAsyncExecutor) {
+            this.asyncExecutor.shutdown();
+        }
+        this.asyncExecutor = asyncExecutor;
+        this.myOwnAsyncExecutor = false;
+        return this;
+    }
+
     public LucextDirectory init() {
-        // EMPTY
+        if (nearCacheMaxBytes > 0) {
+            nearCache = new NearCache(nearCacheMaxBytes, nearCacheMutableTtlMs);
+        }
         return this;
     }
 
     public void destroy() {
-        // EMPTY
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null) {
+            nearCache.clear();
+        }
+        synchronized (this) {
+            if (scheduledExecutor != null) {
+                try {
+                    scheduledExecutor.shutdownNow();
+                } catch (Exception e) {
+                    LOGGER.warn(e.getMessage(), e);
+                } finally {
+                    scheduledExecutor = null;
+                }
+            }
+            if (asyncExecutor != null && myOwnAsyncExecutor) {
+                try {
+                    asyncExecutor.shutdown();
+                } catch (Exception e) {
+                    LOGGER.warn(e.getMessage(), e);
+                } finally {
+                    asyncExecutor = null;
+                }
+            }
+        }
     }
 
     /*----------------------------------------------------------------------*/
@@ -111,6 +334,7 @@ public abstract class LucextDirectory extends BaseDirectory {
      */
     public LucextDirectory setCacheFactory(ICacheFactory cacheFactory) {
         this.cacheFactory = cacheFactory;
+        this.cache = null;
         return this;
     }
 
@@ -131,6 +355,7 @@ public abstract class LucextDirectory extends BaseDirectory {
      */
     public LucextDirectory setCacheName(String cacheName) {
         this.cacheName = cacheName;
+        this.cache = null;
         return this;
     }
 
@@ -155,17 +380,251 @@ public abstract class LucextDirectory extends BaseDirectory {
     }
 
     /**
-     * Get cache instance.
+     * Cache key to store the current metadata generation.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getCacheKeyMetadataGeneration() {
+        return cacheKeyMetadataGeneration;
+    }
+
+    /**
+     * Cache key to store the current metadata generation.
+     *
+     * @param cacheKeyMetadataGeneration
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setCacheKeyMetadataGeneration(String cacheKeyMetadataGeneration) {
+        this.cacheKeyMetadataGeneration = cacheKeyMetadataGeneration;
+        return this;
+    }
+
+    /**
+     * Max (estimated) number of bytes held by the in-process L1 near cache, default value
+     * {@link #DEFAULT_NEAR_CACHE_MAX_BYTES}. Set to {@code 0} to disable the near cache.
+     *
+     * <p>
+     * Note: the near cache is only used in front of a configured cache (see {@link #setCacheFactory(ICacheFactory)}
+     * and {@link #setCacheName(String)}); this setting takes effect when {@link #init()} is called.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getNearCacheMaxBytes() {
+        return nearCacheMaxBytes;
+    }
+
+    /**
+     * Max (estimated) number of bytes held by the in-process L1 near cache, default value
+     * {@link #DEFAULT_NEAR_CACHE_MAX_BYTES}. Set to {@code 0} to disable the near cache.
+     *
+     * @param nearCacheMaxBytes
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setNearCacheMaxBytes(long nearCacheMaxBytes) {
+        this.nearCacheMaxBytes = nearCacheMaxBytes;
+        return this;
+    }
+
+    /**
+     * If greater than {@code 0}, mutable entries (e.g. file metadata) are also cached in the near cache, and expire
+     * after this period so that they are re-checked against the L2 cache. Default value
+     * {@link #DEFAULT_NEAR_CACHE_MUTABLE_TTL_MS} (only immutable data blocks are cached in the near cache).
+     *
+     * <p>
+     * Note: the near cache is per-process, a mutable entry served from it may be stale (up to this period) if the
+     * directory is written by another node. Enable only if readers tolerate such staleness.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getNearCacheMutableTtlMs() {
+        return nearCacheMutableTtlMs;
+    }
+
+    /**
+     * If greater than {@code 0}, mutable entries (e.g. file metadata) are also cached in the near cache, and expire
+     * after this period so that they are re-checked against the L2 cache. Default value
+     * {@link #DEFAULT_NEAR_CACHE_MUTABLE_TTL_MS} (only immutable data blocks are cached in the near cache).
+     *
+     * <p>
+     * Note: the near cache is per-process, a mutable entry served from it may be stale (up to this period) if the
+     * directory is written by another node. Enable only if readers tolerate such staleness.
+     * </p>
+     *
+     * @param nearCacheMutableTtlMs
+     * @return
+     * @since 1.0.1
+     */
+    public LucextDirectory setNearCacheMutableTtlMs(long nearCacheMutableTtlMs) {
+        this.nearCacheMutableTtlMs = nearCacheMutableTtlMs;
+        return this;
+    }
+
+    /**
+     * Get cache instance (L2). The instance is resolved once and reused.
      *
      * @return
      */
     protected ICache getCache() {
-        return cacheFactory != null && cacheName != null ? cacheFactory.createCache(cacheName) : null;
+        ICache cache = this.cache;
+        if (cache == null && cacheFactory != null && cacheName != null) {
+            synchronized (this) {
+                cache = this.cache;
+                if (cache == null) {
+                    cache = cacheFactory.createCache(cacheName);
+                    this.cache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Get the in-process near cache (L1).
+     *
+     * @return {@code null} if near cache is disabled or no L2 cache is configured
+     * @since 1.0.1
+     */
+    protected NearCache getNearCache() {
+        return getCache() != null ? nearCache : null;
+    }
+
+    /**
+     * Cache statistics.
+     *
+     * @author Thanh Nguyen <btnguyen2k@gmail.com>
+     * @since 1.0.1
+     */
+    public static class CacheStats {
+        private long l1Hits, l2Hits, misses, l1Size, l1Bytes, l1Evictions;
+
+        public CacheStats(long l1Hits, long l2Hits, long misses, long l1Size, long l1Bytes, long l1Evictions) {
+            this.l1Hits = l1Hits;
+            this.l2Hits = l2Hits;
+            this.misses = misses;
+            this.l1Size = l1Size;
+            this.l1Bytes = l1Bytes;
+            this.l1Evictions = l1Evictions;
+        }
+
+        /**
+         * Number of lookups served by the near cache.
+         *
+         * @return
+         */
+        public long getL1Hits() {
+            return l1Hits;
+        }
+
+        /**
+         * Number of lookups served by the configured cache.
+         *
+         * @return
+         */
+        public long getL2Hits() {
+            return l2Hits;
+        }
+
+        /**
+         * Number of lookups missed by both levels.
+         *
+         * @return
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Number of entries in the near cache.
+         *
+         * @return
+         */
+        public long getL1Size() {
+            return l1Size;
+        }
+
+        /**
+         * Estimated number of bytes held by the near cache.
+         *
+         * @return
+         */
+        public long getL1Bytes() {
+            return l1Bytes;
+        }
+
+        /**
+         * Number of entries evicted from the near cache.
+         *
+         * @return
+         */
+        public long getL1Evictions() {
+            return l1Evictions;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "{l1Hits:" + l1Hits + ",l2Hits:" + l2Hits + ",misses:" + misses + ",l1Size:" + l1Size + ",l1Bytes:"
+                    + l1Bytes + ",l1Evictions:" + l1Evictions + "}";
+        }
+    }
+
+    /**
+     * Get cache statistics.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public CacheStats getCacheStats() {
+        NearCache nearCache = this.nearCache;
+        return new CacheStats(statsL1Hits.get(), statsL2Hits.get(), statsMisses.get(),
+                nearCache != null ? nearCache.size() : 0, nearCache != null ? nearCache.weight() : 0,
+                nearCache != null ? nearCache.getEvictions() : 0);
+    }
+
+    /**
+     * Get the current metadata generation. Cached file info entries and the cached file listing are scoped by this
+     * generation, so that bumping the generation invalidates them with one single cache operation.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected String getMetadataGeneration() {
+        String generation = getFromCache(cacheKeyMetadataGeneration, String.class);
+        if (generation == null) {
+            generation = IdUtils.nextId();
+            putToCache(cacheKeyMetadataGeneration, generation);
+        }
+        return generation;
+    }
+
+    /**
+     * Start a new metadata generation, effectively invalidating all cached file info entries and the cached file
+     * listing. Call only when the set of file names changes (file created, deleted or renamed), not when a file's size
+     * is updated (its file info entry is written through instead).
+     *
+     * @since 1.0.1
+     */
+    protected void bumpMetadataGeneration() {
+        putToCache(cacheKeyMetadataGeneration, IdUtils.nextId());
     }
 
     /**
      * Calculate cache key for a file's chunk of data.
      *
+     * <p>
+     * Lucene files are write-once and file id is unique, so cached data blocks never need to be invalidated: once a
+     * file is deleted, its blocks are simply not referenced anymore and will be evicted by the cache.
+     * </p>
+     *
      * @param fileInfo
      * @param blockNum
      * @return
@@ -175,23 +634,35 @@ public abstract class LucextDirectory extends BaseDirectory {
     }
 
     /**
-     * Calculate cache key for a file info.
+     * Calculate cache key for a file info (scoped by the current metadata generation). File info entries are written
+     * through on update, and dropped all at once by {@link #bumpMetadataGeneration()} on create, delete or rename.
      *
      * @param fileInfo
      * @return
      */
     protected String cacheKeyFileInfo(FileInfo fileInfo) {
-        return fileInfo.getName();
+        return cacheKeyFileInfo(fileInfo.getName());
     }
 
     /**
-     * Calculate cache key for a file info.
+     * Calculate cache key for a file info (scoped by the current metadata generation). File info entries are written
+     * through on update, and dropped all at once by {@link #bumpMetadataGeneration()} on create, delete or rename.
      *
      * @param fileName
      * @return
      */
     protected String cacheKeyFileInfo(String fileName) {
-        return fileName;
+        return getCache() != null ? fileName + "@" + getMetadataGeneration() : fileName;
+    }
+
+    /**
+     * Calculate cache key for the list of all file names (scoped by the current metadata generation).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected String cacheKeyAllFileNames() {
+        return getCache() != null ? cacheKeyAllFiles + "@" + getMetadataGeneration() : cacheKeyAllFiles;
     }
 
     /**
@@ -201,13 +672,46 @@ public abstract class LucextDirectory extends BaseDirectory {
      * @param clazz
      * @return
      */
-    @SuppressWarnings("unchecked")
     protected <T> T getFromCache(String cacheKey, Class<T> clazz) {
+        return getFromCache(cacheKey, clazz, false);
+    }
+
+    /**
+     * Get an item from cache.
+     *
+     * <p>
+     * Lookup goes to the near cache (L1) first, then the configured cache (L2). An item found in L2 is promoted to
+     * L1. Mutable items bypass L1 unless {@link #getNearCacheMutableTtlMs()} is set.
+     * </p>
+     *
+     * @param cacheKey
+     * @param clazz
+     * @param immutable if {@code true}, the item (e.g. a data block) never changes once written, hence it can live in
+     *                  L1 without being re-checked against L2
+     * @return
+     * @since 1.0.1
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T getFromCache(String cacheKey, Class<T> clazz, boolean immutable) {
+        NearCache nearCache = getNearCache();
+        if (nearCache != null && !immutable && !nearCache.isCachingMutable()) {
+            nearCache = null;
+        }
+        Object obj = nearCache != null ? nearCache.get(cacheKey) : null;
+        if (obj != null && clazz.isAssignableFrom(obj.getClass())) {
+            statsL1Hits.incrementAndGet();
+            return (T) obj;
+        }
         ICache cache = getCache();
-        Object obj = cache != null ? cache.get(cacheKey) : null;
+        obj = cache != null ? cache.get(cacheKey) : null;
         if (obj != null && clazz.isAssignableFrom(obj.getClass())) {
+            statsL2Hits.incrementAndGet();
+            if (nearCache != null) {
+                nearCache.put(cacheKey, obj, immutable);
+            }
             return (T) obj;
         }
+        statsMisses.incrementAndGet();
         return null;
     }
 
@@ -219,8 +723,26 @@ public abstract class LucextDirectory extends BaseDirectory {
      * @return
      */
     protected boolean putToCache(String cacheKey, Object obj) {
+        return putToCache(cacheKey, obj, false);
+    }
+
+    /**
+     * Put an item to cache.
+     *
+     * @param cacheKey
+     * @param obj
+     * @param immutable if {@code true}, the item (e.g. a data block) never changes once written, hence it can live in
+     *                  L1 without being re-checked against L2
+     * @return
+     * @since 1.0.1
+     */
+    protected boolean putToCache(String cacheKey, Object obj, boolean immutable) {
         ICache cache = getCache();
         if (cache != null) {
+            NearCache nearCache = getNearCache();
+            if (nearCache != null) {
+                nearCache.put(cacheKey, obj, immutable);
+            }
             cache.set(cacheKey, obj);
             return true;
         }
@@ -235,6 +757,10 @@ public abstract class LucextDirectory extends BaseDirectory {
     protected void removeFromCache(String cacheKey) {
         ICache cache = getCache();
         if (cache != null) {
+            NearCache nearCache = getNearCache();
+            if (nearCache != null) {
+                nearCache.remove(cacheKey);
+            }
             cache.delete(cacheKey);
         }
     }
@@ -249,6 +775,24 @@ public abstract class LucextDirectory extends BaseDirectory {
      */
     protected abstract List<FileInfo> getAllFileInfo() throws IOException;
 
+    /**
+     * Get names of all files in the directory.
+     *
+     * <p>
+     * This default implementation extracts names from {@link #getAllFileInfo()}. Implementations should override this
+     * method if names can be listed without fetching and decoding all files' metadata.
+     * </p>
+     *
+     * @return
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected List<String> listFileNames() throws IOException {
+        List<String> result = new ArrayList<>();
+        getAllFileInfo().forEach(fi -> result.add(fi.getName()));
+        return result;
+    }
+
     /**
      * Get a file's metadata.
      *
@@ -280,31 +824,335 @@ public abstract class LucextDirectory extends BaseDirectory {
      *
      * @param fileInfo
      * @param blockNum
-     * @return {@code null} if file and/or block does not exist, otherwise a
-     * {@code byte[]} with minimum {@link #blockSize} length is
-     * returned
+     * @return {@code null} if file and/or block does not exist, otherwise the block's data; the last block of a file
+     * may be shorter than {@link #getBlockSize()} (blocks are stored at their true length, see
+     * {@link #writeFileBlock(FileInfo, int, byte[])})
      * @throws IOException
      */
     protected abstract byte[] readFileBlock(FileInfo fileInfo, int blockNum) throws IOException;
 
+    /**
+     * Loads a run of consecutive data chunks of a file from storage.
+     *
+     * <p>
+     * This default implementation calls {@link #readFileBlock(FileInfo, int)} for each block. Implementations should
+     * override this method if the storage can fetch multiple blocks in one request.
+     * </p>
+     *
+     * @param fileInfo
+     * @param startBlockNum
+     * @param count
+     * @return list of {@code count} items, item at index {@code i} is the data of block {@code startBlockNum+i} (see
+     * {@link #readFileBlock(FileInfo, int)})
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected List<byte[]> readFileBlocks(FileInfo fileInfo, int startBlockNum, int count) throws IOException {
+        List<byte[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(readFileBlock(fileInfo, startBlockNum + i));
+        }
+        return result;
+    }
+
     /**
      * Write a file's data chunk to storage.
      *
      * @param fileInfo
      * @param blockNum
      * @param data
+     *         block's data, the last block of a file is passed at its true length (which may be shorter than
+     *         {@link #getBlockSize()})
      * @throws IOException
      */
     protected abstract void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) throws IOException;
 
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Run a blocking task on {@link #getAsyncExecutor()}.
+     *
+     * @param task
+     * @param <T>
+     * @return
+     * @since 1.0.1
+     */
+    protected <T> CompletableFuture<T> callAsync(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            getAsyncExecutor().execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Asynchronous version of {@link #getFileInfo(String)}.
+     *
+     * <p>
+     * This default implementation runs the blocking method on {@link #getAsyncExecutor()}. Implementations should
+     * override this method if the storage has a non-blocking API.
+     * </p>
+     *
+     * @param name
+     * @return
+     * @since 1.0.1
+     */
+    protected CompletableFuture<FileInfo> getFileInfoAsync(String name) {
+        return callAsync(() -> getFileInfo(name));
+    }
+
+    /**
+     * Asynchronous version of {@link #updateFileInfo(FileInfo)}.
+     *
+     * <p>
+     * This default implementation runs the blocking method on {@link #getAsyncExecutor()}. Implementations should
+     * override this method if the storage has a non-blocking API.
+     * </p>
+     *
+     * @param fileInfo
+     * @return
+     * @since 1.0.1
+     */
+    protected CompletableFuture<FileInfo> updateFileInfoAsync(FileInfo fileInfo) {
+        return callAsync(() -> updateFileInfo(fileInfo));
+    }
+
+    /**
+     * Asynchronous version of {@link #readFileBlock(FileInfo, int)}.
+     *
+     * <p>
+     * This default implementation runs the blocking method on {@link #getAsyncExecutor()}. Implementations should
+     * override this method if the storage has a non-blocking API.
+     * </p>
+     *
+     * @param fileInfo
+     * @param blockNum
+     * @return
+     * @since 1.0.1
+     */
+    protected CompletableFuture<byte[]> readFileBlockAsync(FileInfo fileInfo, int blockNum) {
+        return callAsync(() -> readFileBlock(fileInfo, blockNum));
+    }
+
+    /**
+     * Asynchronous version of {@link #readFileBlocks(FileInfo, int, int)}.
+     *
+     * <p>
+     * This default implementation runs the blocking method on {@link #getAsyncExecutor()}. Implementations should
+     * override this method if the storage has a non-blocking API.
+     * </p>
+     *
+     * @param fileInfo
+     * @param startBlockNum
+     * @param count
+     * @return
+     * @since 1.0.1
+     */
+    protected CompletableFuture<List<byte[]>> readFileBlocksAsync(FileInfo fileInfo, int startBlockNum, int count) {
+        return callAsync(() -> readFileBlocks(fileInfo, startBlockNum, count));
+    }
+
+    /**
+     * Asynchronous version of {@link #writeFileBlock(FileInfo, int, byte[])}.
+     *
+     * <p>
+     * This default implementation runs the blocking method on {@link #getAsyncExecutor()}. Implementations should
+     * override this method if the storage has a non-blocking API.
+     * </p>
+     *
+     * @param fileInfo
+     * @param blockNum
+     * @param data
+     * @return
+     * @since 1.0.1
+     */
+    protected CompletableFuture<Void> writeFileBlockAsync(FileInfo fileInfo, int blockNum, byte[] data) {
+        return callAsync(() -> {
+            writeFileBlock(fileInfo, blockNum, data);
+            return null;
+        });
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Per-stream I/O context of a streaming {@link LucextIndexInput} or {@link LucextIndexOutput} (e.g. a storage
+     * connection pinned to the stream), see {@link #openStreamContext(FileInfo, IOContext, boolean)}.
+     *
+     * @since 1.0.1
+     */
+    protected interface StreamContext extends Closeable {
+        /**
+         * Called, on the calling thread, before the stream accesses the storage.
+         */
+        void enter();
+
+        /**
+         * Called, on the calling thread, after the stream has accessed the storage.
+         */
+        void exit();
+
+        /**
+         * Called when the stream is closed.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Open a per-stream I/O context for a {@link LucextIndexInput} (not its clones or slices, which are never closed)
+     * or a {@link LucextIndexOutput}.
+     *
+     * <p>
+     * This default implementation returns {@code null} (no per-stream context).
+     * </p>
+     *
+     * @param fileInfo
+     * @param ioContext
+     * @param forWrite
+     * @return
+     * @since 1.0.1
+     */
+    protected StreamContext openStreamContext(FileInfo fileInfo, IOContext ioContext, boolean forWrite) {
+        return null;
+    }
+
+    /**
+     * Create metadata (with a newly generated id) for a file that is about to be written.
+     *
+     * <p>
+     * Implementations may override this method to encode the file's storage layout into its id.
+     * </p>
+     *
+     * @param name
+     * @return
+     * @since 1.0.1
+     */
+    protected FileInfo newFileInfo(String name) {
+        return FileInfo.newInstance(name);
+    }
+
+    /**
+     * Store metadata of a file whose data has already been written in full, under a name new to {@link #listAll()}:
+     * e.g. a file copied by {@link BulkTransfer} (created with {@link #newFileInfo(String)}), or the target of
+     * {@link #rename(String, String)}.
+     *
+     * <p>
+     * This default implementation calls {@link #updateFileInfo(FileInfo)} then starts a new metadata generation (see
+     * {@link #bumpMetadataGeneration()}), as the set of file names has changed.
+     * </p>
+     *
+     * @param fileInfo
+     * @return
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected FileInfo addFileInfo(FileInfo fileInfo) throws IOException {
+        FileInfo result = updateFileInfo(fileInfo);
+        bumpMetadataGeneration();
+        return result;
+    }
+
+    /**
+     * Remove data blocks written for a file (created with {@link #newFileInfo(String)}) whose metadata will never be
+     * stored, e.g. when {@link BulkTransfer} fails half-way through copying it. The file's size is the size it would
+     * have had; some of its blocks may not have been written.
+     *
+     * <p>
+     * This default implementation does nothing.
+     * </p>
+     *
+     * @param fileInfo
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected void discardFileData(FileInfo fileInfo) throws IOException {
+    }
+
+    /**
+     * Called when a {@link LucextIndexOutput} is closed, after its last block and the file's final size have been
+     * written: from now on, the file's metadata does not change.
+     *
+     * <p>
+     * This default implementation does nothing.
+     * </p>
+     *
+     * @param fileInfo
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected void onOutputClosed(FileInfo fileInfo) throws IOException {
+    }
+
+    /**
+     * If a file's data can be read at arbitrary byte ranges (see {@link #readFileRange(FileInfo, long, int)}), return
+     * the minimum number of bytes fetched per read. {@link LucextIndexInput} then reads the file in pages of this size,
+     * instead of whole blocks.
+     *
+     * <p>
+     * This default implementation returns {@code 0} (file is read block-by-block).
+     * </p>
+     *
+     * @param fileInfo
+     * @return
+     * @since 1.0.1
+     */
+    protected int getRangeReadSize(FileInfo fileInfo) {
+        return 0;
+    }
+
+    /**
+     * Load a range of a file's data from storage.
+     *
+     * <p>
+     * This default implementation assembles the range from blocks loaded by
+     * {@link #readFileBlocks(FileInfo, int, int)}. Implementations should override this method if the storage can
+     * serve arbitrary byte ranges.
+     * </p>
+     *
+     * @param fileInfo
+     * @param offset
+     * @param length
+     * @return {@code null} if file does not exist, otherwise a {@code byte[]} of {@code length} bytes
+     * @throws IOException
+     * @since 1.0.1
+     */
+    protected byte[] readFileRange(FileInfo fileInfo, long offset, int length) throws IOException {
+        byte[] result = new byte[length];
+        if (length <= 0) {
+            return result;
+        }
+        int blockSize = getBlockSize();
+        int startBlockNum = (int) (offset / blockSize);
+        int endBlockNum = (int) ((offset + length - 1) / blockSize);
+        List<byte[]> blocks = readFileBlocks(fileInfo, startBlockNum, endBlockNum - startBlockNum + 1);
+        int copied = 0;
+        for (byte[] block : blocks) {
+            if (block == null) {
+                return null;
+            }
+            int blockOffset = (int) ((offset + copied) % blockSize);
+            int n = Math.min(length - copied, blockSize - blockOffset);
+            System.arraycopy(block, blockOffset, result, copied, Math.max(0, Math.min(n, block.length - blockOffset)));
+            copied += n;
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String[] listAll() throws IOException {
-        List<String> result = new ArrayList<>();
-        getAllFileInfo().forEach(fi -> result.add(fi.getName()));
-        return result.toArray(ArrayUtils.EMPTY_STRING_ARRAY);
+        return listFileNames().toArray(ArrayUtils.EMPTY_STRING_ARRAY);
     }
 
     /**
@@ -333,7 +1181,7 @@ public abstract class LucextDirectory extends BaseDirectory {
         if (fiSource == null) {
             throw new FileNotFoundException("File [" + source + "] not found!");
         }
-        updateFileInfo(fiSource.clone().setName(dest));
+        addFileInfo(fiSource.clone().setName(dest));
         removeFileInfo(fiSource);
     }
 
@@ -394,11 +1242,26 @@ public abstract class LucextDirectory extends BaseDirectory {
      */
     protected abstract Lock createLock(String lockName);
 
+    /**
+     * Base class for Lucext's implementations of Lucene's {@link Lock}.
+     *
+     * <p>
+     * A lock can optionally be a lease lock (see {@link #startLease(long, long)}): it is valid until the lease's
+     * deadline, which is extended by a background heartbeat (see {@link #renewLease()}). {@link #ensureValid()} of a
+     * lease lock checks the locally known deadline and does not make any round trip to the storage.
+     * </p>
+     */
     protected static abstract class LucextLock extends Lock {
+        private final Logger LOGGER = LoggerFactory.getLogger(LucextLock.class);
+
         private FileInfo fileInfo;
-        private boolean locked = false;
+        private volatile boolean locked = false;
         private LucextDirectory directory;
 
+        private volatile long leaseDeadline = 0; // 0: not a lease lock
+        private long leaseMs;
+        private ScheduledFuture<?> heartbeat;
+
         public LucextLock(LucextDirectory directory, String fileName) {
             this.directory = directory;
             this.fileInfo = FileInfo.newInstance(fileName);
@@ -424,11 +1287,100 @@ public abstract class LucextDirectory extends BaseDirectory {
 
         protected abstract boolean obtainLock();
 
+        /**
+         * Turn this lock into a lease lock, valid until {@code leaseStart + leaseMs}. The lease is renewed (see
+         * {@link #renewLease()}) every {@code leaseMs/3} in the background.
+         *
+         * <p>
+         * {@code leaseStart} should be taken before the request to acquire the lock is sent, so that the locally
+         * known deadline never passes the deadline seen by the storage.
+         * </p>
+         *
+         * @param leaseStart
+         * @param leaseMs
+         * @since 1.0.1
+         */
+        protected void startLease(long leaseStart, long leaseMs) {
+            this.leaseMs = leaseMs;
+            this.leaseDeadline = leaseStart + leaseMs;
+            long period = Math.max(1, leaseMs / 3);
+            heartbeat = directory.getScheduledExecutor()
+                    .scheduleWithFixedDelay(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stop renewing the lease.
+         *
+         * @since 1.0.1
+         */
+        protected void stopLease() {
+            ScheduledFuture<?> heartbeat = this.heartbeat;
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+                this.heartbeat = null;
+            }
+        }
+
+        /**
+         * Lease duration of this lock ({@code 0} if this is not a lease lock).
+         *
+         * @return
+         * @since 1.0.1
+         */
+        protected long getLeaseMs() {
+            return leaseMs;
+        }
+
+        /**
+         * Extend the lease by {@link #getLeaseMs()}, if it is still held by this lock.
+         *
+         * @return {@code false} if the lease is no longer held by this lock
+         * @throws Exception
+         * @since 1.0.1
+         */
+        protected boolean renewLease() throws Exception {
+            return true;
+        }
+
+        /**
+         * Current time, in milliseconds, against which the lease deadline is checked.
+         *
+         * @return
+         * @since 1.0.1
+         */
+        protected long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        /**
+         * Renew the lease; run every {@code leaseMs/3} in the background (see {@link #startLease(long, long)}).
+         */
+        void heartbeat() {
+            if (!locked) {
+                stopLease();
+                return;
+            }
+            long now = currentTimeMillis();
+            try {
+                if (renewLease()) {
+                    leaseDeadline = now + leaseMs;
+                } else {
+                    LOGGER.warn("Lease of lock [" + fileInfo.getName() + "] has been lost!");
+                    locked = false;
+                    stopLease();
+                }
+            } catch (Exception e) {
+                // the lease is kept until its deadline, next heartbeat will retry
+                LOGGER.warn("Cannot renew lease of lock [" + fileInfo.getName() + "]: " + e.getMessage(), e);
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void close() throws IOException {
+            stopLease();
             if (locked) {
                 directory.deleteFile(fileInfo.getName());
                 locked = false;
@@ -443,6 +1395,12 @@ public abstract class LucextDirectory extends BaseDirectory {
             if (!locked) {
                 throw new AlreadyClosedException("Lock instance is not held or already released: " + this);
             }
+            if (leaseDeadline > 0) {
+                if (currentTimeMillis() >= leaseDeadline) {
+                    throw new AlreadyClosedException("Lease of lock instance has expired: " + this);
+                }
+                return;
+            }
             FileInfo fileInfo = directory.getFileInfo(this.fileInfo.getName());
             if (fileInfo == null || !StringUtils.equals(fileInfo.getId(), this.fileInfo.getId())) {
                 throw new AlreadyClosedException("Lock invalidated or is held by another source: " + this);
@@ -463,12 +1421,25 @@ public abstract class LucextDirectory extends BaseDirectory {
         private int bufferOffset = 0;
         private int blockNum = 0;
         private byte[] buffer;
+        private StreamContext streamContext;
 
         public LucextIndexOutput(LucextDirectory directory, FileInfo fileInfo) {
+            this(directory, fileInfo, null);
+        }
+
+        /**
+         * @param directory
+         * @param fileInfo
+         * @param streamContext
+         *         see {@link LucextDirectory#openStreamContext(FileInfo, IOContext, boolean)}, may be {@code null}
+         * @since 1.0.1
+         */
+        public LucextIndexOutput(LucextDirectory directory, FileInfo fileInfo, StreamContext streamContext) {
             super(fileInfo.getId() + "_" + fileInfo.getName(), fileInfo.getName());
             this.directory = directory;
             this.fileInfo = fileInfo;
             this.buffer = new byte[directory.getBlockSize()];
+            this.streamContext = streamContext;
         }
 
         /**
@@ -476,18 +1447,37 @@ public abstract class LucextDirectory extends BaseDirectory {
          */
         @Override
         public void close() throws IOException {
-            flushBlock();
+            try {
+                flushBlock();
+                directory.onOutputClosed(fileInfo);
+            } finally {
+                if (streamContext != null) {
+                    streamContext.close();
+                    streamContext = null;
+                }
+            }
         }
 
         synchronized private void flushBlock() throws IOException {
             if (bufferOffset > 0) {
                 long t1 = System.currentTimeMillis();
-                directory.writeFileBlock(fileInfo, blockNum, buffer);
-                blockNum++;
-                bufferOffset = 0;
-                buffer = new byte[directory.getBlockSize()];
-                fileInfo.setSize(bytesWritten);
-                directory.updateFileInfo(fileInfo);
+                if (streamContext != null) {
+                    streamContext.enter();
+                }
+                try {
+                    // the final (partial) block is stored at its true length
+                    directory.writeFileBlock(fileInfo, blockNum,
+                            bufferOffset < buffer.length ? Arrays.copyOf(buffer, bufferOffset) : buffer);
+                    blockNum++;
+                    bufferOffset = 0;
+                    buffer = new byte[directory.getBlockSize()];
+                    fileInfo.setSize(bytesWritten);
+                    directory.updateFileInfo(fileInfo);
+                } finally {
+                    if (streamContext != null) {
+                        streamContext.exit();
+                    }
+                }
                 long t2 = System.currentTimeMillis();
                 if (LOGGER.isTraceEnabled()) {
                     LOGGER.trace(
@@ -556,16 +1546,45 @@ public abstract class LucextDirectory extends BaseDirectory {
         private byte[] block;
         private int blockOffset = 0;
         private int blockNum = 0;
+        private int lastLoadedBlockNum = -1;
+        private Map<Integer, byte[]> readAheadBlocks = new HashMap<>();
+        private Map<Integer, CompletableFuture<byte[]>> inFlightBlocks = new HashMap<>();
+        private int nextBlockToFetch = 0;
+
+        /*
+         * Unit of loading data: a block, or a page of getRangeReadSize() bytes if the file supports range reads.
+         * "block" fields below refer to this unit.
+         */
+        private boolean rangeRead;
+        private int pageSize;
+
+        private StreamContext streamContext;
 
         private long offset, end, pos;
 
         public LucextIndexInput(LucextDirectory directory, FileInfo fileInfo) {
+            this(directory, fileInfo, null);
+        }
+
+        /**
+         * @param directory
+         * @param fileInfo
+         * @param streamContext
+         *         see {@link LucextDirectory#openStreamContext(FileInfo, IOContext, boolean)}, may be {@code null};
+         *         clones and slices do not share it
+         * @since 1.0.1
+         */
+        public LucextIndexInput(LucextDirectory directory, FileInfo fileInfo, StreamContext streamContext) {
             super(fileInfo.getId() + "_" + fileInfo.getName());
+            this.streamContext = streamContext;
             this.directory = directory;
             this.fileInfo = fileInfo;
             this.offset = 0L;
             this.pos = 0L;
             this.end = fileInfo.getSize();
+            int rangeReadSize = directory.getRangeReadSize(fileInfo);
+            this.rangeRead = rangeReadSize > 0;
+            this.pageSize = rangeRead ? rangeReadSize : directory.getBlockSize();
         }
 
         public LucextIndexInput(String resourceDesc, LucextIndexInput another, long offset, long length) {
@@ -574,6 +1593,8 @@ public abstract class LucextDirectory extends BaseDirectory {
             this.fileInfo = another.fileInfo;
             this.offset = another.offset + offset;
             this.end = this.offset + length;
+            this.rangeRead = another.rangeRead;
+            this.pageSize = another.pageSize;
             this.blockNum = another.blockNum;
             this.blockOffset = another.blockOffset;
             // if (another.block != null) {
@@ -591,8 +1612,157 @@ public abstract class LucextDirectory extends BaseDirectory {
                 final String logMsg = "loadBlock(" + fileInfo.getId() + ":" + fileInfo.getName() + "/" + blockNum + ")";
                 LOGGER.trace(logMsg);
             }
-            block = directory.readFileBlock(fileInfo, blockNum);
+            byte[] data = readAheadBlocks.remove(blockNum);
+            if (data == null && streamContext != null) {
+                streamContext.enter();
+                try {
+                    data = fetchBlock(blockNum);
+                } finally {
+                    streamContext.exit();
+                }
+            } else if (data == null) {
+                data = fetchBlock(blockNum);
+            }
+            block = data;
             this.blockNum = blockNum;
+            this.lastLoadedBlockNum = blockNum;
+        }
+
+        /**
+         * Read-ahead starts only once two consecutive blocks have been loaded: the first block loaded by a fresh
+         * input (or clone) does not count as sequential access.
+         */
+        private boolean isSequentialLoad(int blockNum) {
+            return lastLoadedBlockNum >= 0 && blockNum == lastLoadedBlockNum + 1;
+        }
+
+        /**
+         * Read-ahead window: max number of blocks ahead of the current one that are buffered or in flight.
+         */
+        private int readAheadWindow() {
+            if (rangeRead) {
+                return (int) Math.max(1, (long) directory.getReadAheadBlocks() * directory.getBlockSize() / pageSize);
+            }
+            return Math.max(1, directory.getReadAheadBlocks()) * Math.max(1, directory.getReadConcurrency());
+        }
+
+        /**
+         * Copy entries of the read-ahead window, starting from the current block.
+         */
+        private <V> Map<Integer, V> copyReadAheadWindow(Map<Integer, V> src) {
+            Map<Integer, V> result = new HashMap<>();
+            int from = blockNum, to = blockNum + readAheadWindow();
+            src.forEach((k, v) -> {
+                if (k >= from && k <= to) {
+                    result.put(k, v);
+                }
+            });
+            return result;
+        }
+
+        private byte[] fetchBlock(int blockNum) throws IOException {
+            byte[] data;
+            if (rangeRead) {
+                data = loadPages(blockNum);
+            } else {
+                int blockSize = directory.getBlockSize();
+                int numBlocks = (int) ((fileInfo.getSize() + blockSize - 1) / blockSize);
+                int count = Math.min(directory.getReadAheadBlocks(), numBlocks - blockNum);
+                if (directory.getReadConcurrency() > 1) {
+                    data = fetchBlockConcurrently(blockNum, numBlocks);
+                } else if (count > 1 && isSequentialLoad(blockNum)) {
+                    // sequential access: fetch the next blocks in one go
+                    readAheadBlocks.clear();
+                    List<byte[]> blocks = directory.readFileBlocks(fileInfo, blockNum, count);
+                    data = blocks.get(0);
+                    for (int i = 1; i < blocks.size(); i++) {
+                        if (blocks.get(i) != null) {
+                            readAheadBlocks.put(blockNum + i, blocks.get(i));
+                        }
+                    }
+                } else {
+                    data = directory.readFileBlock(fileInfo, blockNum);
+                }
+            }
+            return data;
+        }
+
+        /**
+         * Fetch a block with the asynchronous SPI. If blocks are accessed sequentially, the following blocks (up to
+         * {@link LucextDirectory#getReadConcurrency()} runs of {@link LucextDirectory#getReadAheadBlocks()} blocks)
+         * are kept in flight. A new run is requested only once a whole run fits in the window, so that runs are not
+         * split into single-block reads.
+         */
+        private byte[] fetchBlockConcurrently(int blockNum, int numBlocks) throws IOException {
+            CompletableFuture<byte[]> future = inFlightBlocks.remove(blockNum);
+            if (isSequentialLoad(blockNum)) {
+                int runSize = Math.max(1, directory.getReadAheadBlocks());
+                int limit = (int) Math.min(numBlocks, blockNum + 1 + (long) directory.getReadConcurrency() * runSize);
+                nextBlockToFetch = Math.max(nextBlockToFetch, blockNum + 1);
+                while (nextBlockToFetch < limit && (nextBlockToFetch + runSize <= limit || limit == numBlocks)) {
+                    int start = nextBlockToFetch, count = Math.min(runSize, numBlocks - start);
+                    CompletableFuture<List<byte[]>> run = directory.readFileBlocksAsync(fileInfo, start, count);
+                    for (int i = 0; i < count; i++) {
+                        final int index = i;
+                        inFlightBlocks.put(start + i, run.thenApply(blocks -> blocks.get(index)));
+                    }
+                    nextBlockToFetch = start + count;
+                }
+            } else {
+                // random access: in-flight blocks are not needed anymore, they are left to complete on their own
+                // (clones may share them)
+                inFlightBlocks.clear();
+                nextBlockToFetch = 0;
+            }
+            if (future == null) {
+                return directory.readFileBlock(fileInfo, blockNum);
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        /**
+         * Load a page with one range read. If pages are accessed sequentially, the following pages (up to
+         * {@link LucextDirectory#getReadAheadBlocks()} blocks worth of data) are fetched within the same read.
+         */
+        private byte[] loadPages(int pageNum) throws IOException {
+            long start = (long) pageNum * pageSize;
+            long remaining = fileInfo.getSize() - start;
+            if (remaining <= 0) {
+                return null;
+            }
+            int numPages = 1;
+            if (isSequentialLoad(pageNum)) {
+                numPages = (int) Math.max(1,
+                        (long) directory.getReadAheadBlocks() * directory.getBlockSize() / pageSize);
+            }
+            int length = (int) Math.min(remaining, (long) numPages * pageSize);
+            byte[] data = directory.readFileRange(fileInfo, start, length);
+            if (data == null) {
+                return null;
+            }
+            if (data.length < length) {
+                data = Arrays.copyOf(data, length);
+            }
+            readAheadBlocks.clear();
+            for (int i = 1; i * pageSize < length; i++) {
+                readAheadBlocks.put(pageNum + i,
+                        Arrays.copyOfRange(data, i * pageSize, Math.min(length, (i + 1) * pageSize)));
+            }
+            return length <= pageSize ? data : Arrays.copyOf(data, pageSize);
         }
 
         /**
@@ -611,7 +1781,16 @@ public abstract class LucextDirectory extends BaseDirectory {
             if (block != null) {
                 clone.block = Arrays.copyOf(block, block.length);
             }
+            clone.rangeRead = rangeRead;
+            clone.pageSize = pageSize;
+            // a clone is usually used for random access: it starts without read-ahead, and only keeps already
+            // fetched blocks of the current window
+            clone.lastLoadedBlockNum = -1;
+            clone.readAheadBlocks = copyReadAheadWindow(readAheadBlocks);
+            clone.inFlightBlocks = copyReadAheadWindow(inFlightBlocks);
+            clone.nextBlockToFetch = nextBlockToFetch;
             clone.isSlice = this.isSlice;
+            clone.streamContext = null;
             return clone;
         }
 
@@ -620,7 +1799,12 @@ public abstract class LucextDirectory extends BaseDirectory {
          */
         @Override
         public void close() {
-            // EMPTY
+            inFlightBlocks.clear();
+            nextBlockToFetch = 0;
+            if (streamContext != null) {
+                streamContext.close();
+                streamContext = null;
+            }
         }
 
         /**
@@ -657,11 +1841,11 @@ public abstract class LucextDirectory extends BaseDirectory {
             }
 
             this.pos = pos;
-            long newBlockNum = (pos + offset) / directory.getBlockSize();
+            long newBlockNum = (pos + offset) / pageSize;
             if (newBlockNum != blockNum) {
                 loadBlock((int) newBlockNum);
             }
-            blockOffset = (int) ((pos + offset) % directory.getBlockSize());
+            blockOffset = (int) ((pos + offset) % pageSize);
         }
 
         /**
@@ -698,10 +1882,12 @@ public abstract class LucextDirectory extends BaseDirectory {
 
             byte data = block[blockOffset++];
             pos++;
-            if (blockOffset >= directory.getBlockSize()) {
-                loadBlock(blockNum + 1);
+            if (blockOffset >= pageSize) {
+                // next block is loaded lazily, on next read
+                block = null;
+                blockNum++;
             }
-            blockOffset = (int) ((pos + offset) % directory.getBlockSize());
+            blockOffset = (int) ((pos + offset) % pageSize);
             return data;
         }
 
@@ -0,0 +1,220 @@
+package com.github.ddth.lucext.directory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, in-process cache used as L1 in front of a (possibly remote) {@link com.github.ddth.cacheadapter.ICache}.
+ *
+ * <p>
+ * Design:
+ * <ul>
+ * <li>Entries are spread over a fixed number of segments; each segment is an access-ordered LRU map guarded by its own
+ * lock, so concurrent readers/writers of different segments do not contend.</li>
+ * <li>Capacity is expressed in (estimated) bytes; each segment evicts its least-recently-used entries once its share
+ * of the budget is exceeded.</li>
+ * <li>Immutable entries live until evicted. Mutable entries are only cached if a TTL is configured, and expire after
+ * it so that they are periodically re-checked against the L2 cache.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class NearCache {
+    private final static int NUM_SEGMENTS = 16;
+
+    private static class Entry {
+        final Object value;
+        final long weight;
+        final long expireAt;
+
+        Entry(Object value, long weight, long expireAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt > 0 && expireAt <= now;
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+        private long weight = 0;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+    }
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+    private final long maxBytesPerSegment;
+    private final long mutableTtlMs;
+
+    private AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * @param maxBytes     maximum (estimated) number of bytes held by this cache
+     * @param mutableTtlMs time-to-live of mutable entries, in milliseconds ({@code 0} or negative: mutable entries are
+     *                     not cached)
+     */
+    public NearCache(long maxBytes, long mutableTtlMs) {
+        this.maxBytesPerSegment = Math.max(1, maxBytes / NUM_SEGMENTS);
+        this.mutableTtlMs = mutableTtlMs;
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (NUM_SEGMENTS - 1)];
+    }
+
+    /**
+     * Estimate memory footprint of a cached object.
+     *
+     * @param value
+     * @return
+     */
+    protected long weigh(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length + 16;
+        }
+        if (value instanceof Collection) {
+            return 128L * ((Collection<?>) value).size() + 16;
+        }
+        return 128;
+    }
+
+    /**
+     * Get an entry from cache.
+     *
+     * @param key
+     * @return {@code null} if the entry does not exist or has expired
+     */
+    public Object get(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                segment.remove(key);
+                segment.weight -= entry.weight;
+                entry = null;
+            }
+            return entry != null ? entry.value : null;
+        }
+    }
+
+    /**
+     * Put an entry to cache.
+     *
+     * @param key
+     * @param value
+     * @param immutable immutable entries never expire (they are subject to eviction, though), mutable entries are
+     *                  not cached unless a TTL is configured (see {@link #isCachingMutable()})
+     */
+    public void put(String key, Object value, boolean immutable) {
+        if (value == null || (!immutable && !isCachingMutable())) {
+            remove(key);
+            return;
+        }
+        long weight = weigh(value);
+        if (weight > maxBytesPerSegment) {
+            remove(key);
+            return;
+        }
+        long expireAt = immutable ? 0 : System.currentTimeMillis() + mutableTtlMs;
+        Entry entry = new Entry(value, weight, expireAt);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry old = segment.put(key, entry);
+            if (old != null) {
+                segment.weight -= old.weight;
+            }
+            segment.weight += weight;
+            Iterator<Map.Entry<String, Entry>> it = segment.entrySet().iterator();
+            while (segment.weight > maxBytesPerSegment && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                it.remove();
+                segment.weight -= eldest.getValue().weight;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Are mutable entries cached (i.e. is a TTL for mutable entries configured)?
+     *
+     * @return
+     */
+    public boolean isCachingMutable() {
+        return mutableTtlMs > 0;
+    }
+
+    /**
+     * Remove an entry from cache.
+     *
+     * @param key
+     */
+    public void remove(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry old = segment.remove(key);
+            if (old != null) {
+                segment.weight -= old.weight;
+            }
+        }
+    }
+
+    /**
+     * Remove all entries from cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Number of entries currently in cache.
+     *
+     * @return
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimated number of bytes currently held by cache.
+     *
+     * @return
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
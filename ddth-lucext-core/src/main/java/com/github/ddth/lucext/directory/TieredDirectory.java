@@ -0,0 +1,616 @@
+package com.github.ddth.lucext.directory;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A two-tier {@link Directory}: new files are written to a local {@link FSDirectory}, served from there and uploaded
+ * asynchronously to a {@link LucextDirectory} backend.
+ *
+ * <p>
+ * Design:
+ * <ul>
+ * <li>{@link #createOutput(String, IOContext)} writes to the local directory. When the output is closed, the file is
+ * scheduled for upload to the remote directory.</li>
+ * <li>{@link #sync(Collection)}, {@link #rename(String, String)} and {@link #syncMetaData()} wait for pending uploads,
+ * hence a commit only completes once all of its files are durable remotely.</li>
+ * <li>{@link #openInput(String, IOContext)} serves files from the local directory if a local copy exists, from the
+ * remote directory otherwise.</li>
+ * <li>Local copies of files that have been uploaded are evicted (least recently opened first) once the local
+ * directory exceeds {@link #getLocalSizeBudget()} bytes.</li>
+ * <li>Temp files ({@link #createTempOutput(String, String, IOContext)}) are never part of a commit; they stay local
+ * and are never uploaded.</li>
+ * <li>Locking is delegated to the remote directory.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Note: the local directory is used as scratch space and is emptied by {@link #init()}.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class TieredDirectory extends Directory {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(TieredDirectory.class);
+
+    public final static long DEFAULT_LOCAL_SIZE_BUDGET = 1024L * 1024 * 1024; // 1gb
+    public final static int DEFAULT_NUM_UPLOAD_THREADS = 4;
+
+    private static class LocalFile {
+        final long size;
+        volatile long lastAccess;
+        volatile boolean uploaded;
+
+        LocalFile(long size) {
+            this.size = size;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private FSDirectory localDirectory;
+    private LucextDirectory remoteDirectory;
+
+    private long localSizeBudget = DEFAULT_LOCAL_SIZE_BUDGET;
+    private int numUploadThreads = DEFAULT_NUM_UPLOAD_THREADS;
+    private ExecutorService uploadExecutor;
+    private boolean myOwnUploadExecutor = false;
+
+    private ConcurrentMap<String, LocalFile> localFiles = new ConcurrentHashMap<>();
+    private Set<String> tempFiles = ConcurrentHashMap.newKeySet();
+    private ConcurrentMap<String, UploadTask> pendingUploads = new ConcurrentHashMap<>();
+    private Set<String> failedUploads = ConcurrentHashMap.newKeySet();
+
+    public TieredDirectory(FSDirectory localDirectory, LucextDirectory remoteDirectory) {
+        this.localDirectory = localDirectory;
+        this.remoteDirectory = remoteDirectory;
+    }
+
+    /**
+     * The local (write) tier.
+     *
+     * @return
+     */
+    public FSDirectory getLocalDirectory() {
+        return localDirectory;
+    }
+
+    /**
+     * The remote (durable) tier.
+     *
+     * @return
+     */
+    public LucextDirectory getRemoteDirectory() {
+        return remoteDirectory;
+    }
+
+    /**
+     * Max total size (in bytes) of uploaded files kept in the local directory, default value
+     * {@link #DEFAULT_LOCAL_SIZE_BUDGET}. Files that have not been uploaded yet are never evicted.
+     *
+     * @return
+     */
+    public long getLocalSizeBudget() {
+        return localSizeBudget;
+    }
+
+    /**
+     * Max total size (in bytes) of uploaded files kept in the local directory, default value
+     * {@link #DEFAULT_LOCAL_SIZE_BUDGET}. Files that have not been uploaded yet are never evicted.
+     *
+     * @param localSizeBudget
+     * @return
+     */
+    public TieredDirectory setLocalSizeBudget(long localSizeBudget) {
+        this.localSizeBudget = localSizeBudget;
+        return this;
+    }
+
+    /**
+     * Number of threads to upload files to the remote directory, default value {@link #DEFAULT_NUM_UPLOAD_THREADS}.
+     * Only used if no custom {@link ExecutorService} is supplied.
+     *
+     * @return
+     */
+    public int getNumUploadThreads() {
+        return numUploadThreads;
+    }
+
+    /**
+     * Number of threads to upload files to the remote directory, default value {@link #DEFAULT_NUM_UPLOAD_THREADS}.
+     * Only used if no custom {@link ExecutorService} is supplied.
+     *
+     * @param numUploadThreads
+     * @return
+     */
+    public TieredDirectory setNumUploadThreads(int numUploadThreads) {
+        this.numUploadThreads = numUploadThreads > 0 ? numUploadThreads : DEFAULT_NUM_UPLOAD_THREADS;
+        return this;
+    }
+
+    /**
+     * The {@link ExecutorService} to upload files to the remote directory. If no custom {@link ExecutorService} is
+     * supplied, one is created on first use.
+     *
+     * @return
+     */
+    synchronized protected ExecutorService getUploadExecutor() {
+        if (uploadExecutor == null) {
+            uploadExecutor = Executors.newFixedThreadPool(numUploadThreads);
+            myOwnUploadExecutor = true;
+        }
+        return uploadExecutor;
+    }
+
+    /**
+     * The {@link ExecutorService} to upload files to the remote directory.
+     *
+     * @param uploadExecutor
+     * @return
+     */
+    synchronized public TieredDirectory setUploadExecutor(ExecutorService uploadExecutor) {
+        if (this.uploadExecutor != null && myOwnUploadExecutor) {
+            this.uploadExecutor.shutdown();
+        }
+        this.uploadExecutor = uploadExecutor;
+        this.myOwnUploadExecutor = false;
+        return this;
+    }
+
+    /**
+     * Initializing method.
+     *
+     * @return
+     * @throws IOException
+     */
+    public TieredDirectory init() throws IOException {
+        for (String name : localDirectory.listAll()) {
+            try {
+                localDirectory.deleteFile(name);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot purge local file [" + name + "]: " + e.getMessage(), e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Cleanup method.
+     */
+    public void destroy() {
+        try {
+            waitForUploads(getUnfinishedUploads());
+        } catch (IOException e) {
+            LOGGER.warn(e.getMessage(), e);
+        }
+        synchronized (this) {
+            if (uploadExecutor != null && myOwnUploadExecutor) {
+                try {
+                    uploadExecutor.shutdown();
+                } catch (Exception e) {
+                    LOGGER.warn(e.getMessage(), e);
+                } finally {
+                    uploadExecutor = null;
+                }
+            }
+        }
+        for (Directory dir : new Directory[] { localDirectory, remoteDirectory }) {
+            try {
+                dir.close();
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Total size of files currently kept in the local directory (temp files excluded).
+     *
+     * @return
+     */
+    public long getLocalSize() {
+        long size = 0;
+        for (LocalFile lf : localFiles.values()) {
+            size += lf.size;
+        }
+        return size;
+    }
+
+    /**
+     * Number of files waiting to be uploaded to the remote directory (including files whose last upload attempt
+     * failed).
+     *
+     * @return
+     */
+    public int getNumPendingUploads() {
+        return getUnfinishedUploads().size();
+    }
+
+    private Set<String> getUnfinishedUploads() {
+        Set<String> result = new HashSet<>(pendingUploads.keySet());
+        result.addAll(failedUploads);
+        return result;
+    }
+
+    /**
+     * Upload of a file to the remote directory.
+     *
+     * <p>
+     * {@link FutureTask#cancel(boolean)} also succeeds while the task is running, hence {@link #deleteFile(String)}
+     * cancels an upload only if it has not started (see {@link #cancelIfNotStarted()}), and waits for it otherwise.
+     * </p>
+     */
+    private class UploadTask extends FutureTask<Void> {
+        private final String name;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+
+        UploadTask(String name) {
+            super(() -> {
+                upload(name);
+                return null;
+            });
+            this.name = name;
+        }
+
+        /**
+         * Cancel the upload if it has not started yet.
+         *
+         * @return {@code true} if the upload has been cancelled and will never run, {@code false} if it has already
+         *         started (or finished)
+         */
+        boolean cancelIfNotStarted() {
+            return started.compareAndSet(false, true) && cancel(false);
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                super.run();
+            }
+        }
+
+        @Override
+        protected void done() {
+            // finished, failed or cancelled: a failed upload is kept in failedUploads and re-scheduled by
+            // waitForUploads
+            pendingUploads.remove(name, this);
+        }
+    }
+
+    private void upload(String name) throws IOException {
+        long t1 = System.currentTimeMillis();
+        try {
+            remoteDirectory.copyFrom(localDirectory, name, name, IOContext.DEFAULT);
+        } catch (Exception e) {
+            LOGGER.warn("Upload of file [" + name + "] failed: " + e.getMessage(), e);
+            failedUploads.add(name);
+            throw e;
+        }
+        LocalFile lf = localFiles.get(name);
+        if (lf != null) {
+            lf.uploaded = true;
+        }
+        long t2 = System.currentTimeMillis();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Uploaded file [" + name + "] in " + (t2 - t1) + " ms");
+        }
+        evictLocalFiles();
+    }
+
+    private Future<?> scheduleUpload(String name) {
+        failedUploads.remove(name);
+        UploadTask task = new UploadTask(name);
+        pendingUploads.put(name, task);
+        getUploadExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * Wait until the specified files have been uploaded to the remote directory.
+     *
+     * <p>
+     * A file whose previous upload failed is re-scheduled once; if that upload also fails, an {@link IOException}
+     * is thrown and the file is re-scheduled again on the next call.
+     * </p>
+     *
+     * @param names
+     * @throws IOException
+     */
+    protected void waitForUploads(Collection<String> names) throws IOException {
+        for (String name : names) {
+            Future<?> future = pendingUploads.get(name);
+            boolean retried = false;
+            while (true) {
+                if (future == null) {
+                    if (retried || !failedUploads.contains(name) || !localFiles.containsKey(name)) {
+                        break;
+                    }
+                    LOGGER.warn("Re-scheduling failed upload of file [" + name + "]");
+                    future = scheduleUpload(name);
+                    retried = true;
+                }
+                try {
+                    future.get();
+                    // get() may return before done() has run
+                    pendingUploads.remove(name, future);
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ThreadInterruptedException(e);
+                } catch (CancellationException e) {
+                    // upload was cancelled because the file has been deleted
+                    break;
+                } catch (ExecutionException e) {
+                    if (retried) {
+                        throw new IOException("Upload of file [" + name + "] failed", e.getCause());
+                    }
+                    future = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict local copies of uploaded files, least recently opened first, until the local size budget is met.
+     */
+    synchronized protected void evictLocalFiles() {
+        long localSize = getLocalSize();
+        if (localSize <= localSizeBudget) {
+            return;
+        }
+        List<Map.Entry<String, LocalFile>> candidates = new ArrayList<>();
+        localFiles.forEach((name, lf) -> {
+            if (lf.uploaded) {
+                candidates.add(new AbstractMap.SimpleEntry<>(name, lf));
+            }
+        });
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, LocalFile> candidate : candidates) {
+            if (localSize <= localSizeBudget) {
+                break;
+            }
+            String name = candidate.getKey();
+            if (localFiles.remove(name, candidate.getValue())) {
+                try {
+                    localDirectory.deleteFile(name);
+                } catch (IOException e) {
+                    LOGGER.warn("Cannot evict local file [" + name + "]: " + e.getMessage(), e);
+                }
+                localSize -= candidate.getValue().size;
+            }
+        }
+    }
+
+    private boolean isLocal(String name) {
+        return localFiles.containsKey(name) || tempFiles.contains(name);
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] listAll() throws IOException {
+        Set<String> result = new TreeSet<>(Arrays.asList(remoteDirectory.listAll()));
+        result.addAll(localFiles.keySet());
+        result.addAll(tempFiles);
+        return result.toArray(ArrayUtils.EMPTY_STRING_ARRAY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteFile(String name) throws IOException {
+        UploadTask upload = pendingUploads.get(name);
+        if (upload != null && !upload.cancelIfNotStarted()) {
+            // a running upload would re-create the remote file after it has been deleted: wait for it
+            try {
+                upload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ThreadInterruptedException(e);
+            } catch (CancellationException | ExecutionException e) {
+                // failed: whatever has been written remotely is deleted below
+            }
+        }
+        pendingUploads.remove(name);
+        failedUploads.remove(name);
+        if (tempFiles.remove(name)) {
+            localDirectory.deleteFile(name);
+            return;
+        }
+        if (localFiles.remove(name) != null) {
+            localDirectory.deleteFile(name);
+        }
+        remoteDirectory.deleteFile(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long fileLength(String name) throws IOException {
+        LocalFile lf = localFiles.get(name);
+        if (lf != null) {
+            return lf.size;
+        }
+        if (tempFiles.contains(name)) {
+            return localDirectory.fileLength(name);
+        }
+        return remoteDirectory.fileLength(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        return new UploadOnCloseIndexOutput(localDirectory.createOutput(name, context));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+        IndexOutput output = localDirectory.createTempOutput(prefix, suffix, context);
+        tempFiles.add(output.getName());
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sync(Collection<String> names) throws IOException {
+        waitForUploads(names);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename(String source, String dest) throws IOException {
+        waitForUploads(Collections.singleton(source));
+        remoteDirectory.rename(source, dest);
+        LocalFile lf = localFiles.remove(source);
+        if (lf != null) {
+            localDirectory.rename(source, dest);
+            localFiles.put(dest, lf);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void syncMetaData() throws IOException {
+        waitForUploads(getUnfinishedUploads());
+        remoteDirectory.syncMetaData();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        LocalFile lf = localFiles.get(name);
+        if (lf != null || tempFiles.contains(name)) {
+            try {
+                IndexInput input = localDirectory.openInput(name, context);
+                if (lf != null) {
+                    lf.lastAccess = System.currentTimeMillis();
+                }
+                return input;
+            } catch (NoSuchFileException | FileNotFoundException e) {
+                // local copy has just been evicted, fall back to the remote directory
+                if (tempFiles.contains(name)) {
+                    throw e;
+                }
+            }
+        }
+        return remoteDirectory.openInput(name, context);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Lock obtainLock(String name) throws IOException {
+        return remoteDirectory.obtainLock(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getPendingDeletions() throws IOException {
+        Set<String> result = new HashSet<>(localDirectory.getPendingDeletions());
+        result.addAll(remoteDirectory.getPendingDeletions());
+        return result;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Write to a local file and schedule the upload when closed.
+     */
+    private class UploadOnCloseIndexOutput extends IndexOutput {
+        private IndexOutput delegate;
+        private boolean closed = false;
+
+        public UploadOnCloseIndexOutput(IndexOutput delegate) {
+            super("UploadOnCloseIndexOutput(" + delegate + ")", delegate.getName());
+            this.delegate = delegate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                delegate.close();
+                String name = getName();
+                localFiles.put(name, new LocalFile(delegate.getFilePointer()));
+                scheduleUpload(name);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getFilePointer() {
+            return delegate.getFilePointer();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getChecksum() throws IOException {
+            return delegate.getChecksum();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeByte(byte b) throws IOException {
+            delegate.writeByte(b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            delegate.writeBytes(b, offset, length);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.github.ddth.lucext.directory.cassandra;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
-import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 import com.datastax.oss.driver.api.core.cql.Statement;
 import com.github.ddth.cql.SessionManager;
 import com.github.ddth.lucext.directory.FileInfo;
@@ -17,11 +21,33 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.math.BigInteger;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Cassandra implementation of {@link Directory}.
@@ -49,16 +75,48 @@ import java.util.List;
  *     blockdata           BLOB,
  *     PRIMARY KEY (id, blocknum)
  * );
+ *
+ * -- (optional, see setBlocksPerBucket) table to store actual file's data, bucketed layout.
+ * CREATE TABLE filedata_bucketed (
+ *     id                  VARCHAR,
+ *     bucket              INT,
+ *     blocknum            INT,
+ *     blockdata           BLOB,
+ *     PRIMARY KEY ((id, bucket), blocknum)
+ * );
  * </pre>
  *
  * <p>
+ * Tables can also be created by {@link #init()} with recommended options, see {@link #setCreateSchema(boolean)}.
+ * </p>
+ *
+ * <p>
  * Design:
  * <ul>
  * <li>A table named {@link #tableMetadata} to store directory metadata (file info:
  * {@code id, name, size}), each file info is stored in a field keyed by file name.</li>
  * <li>A table named {@link #tableFiledata} to store file data. File data is divided into
- * {@link #getBlockSize()}-byte chunks.
- * <li>
+ * {@link #getBlockSize()}-byte chunks.</li>
+ * <li>The asynchronous SPI (e.g. {@link #readFileBlockAsync(FileInfo, int)}) is implemented with the driver's
+ * {@code executeAsync}.</li>
+ * <li>Optionally (see {@link #setBlocksPerBucket(int)}), new files are stored in table {@link #tableFiledataBucketed},
+ * partitioned by {@code (id, bucket)} so that a large file is spread across the cluster. The layout is recorded
+ * per file (in the file id), existing files keep being read from {@link #tableFiledata}.</li>
+ * <li>Optionally (see {@link #setGenerationPeriodMs(long)}), new files are stored in generation-scoped tables that are
+ * dropped once no file references them: deleting a file then removes only its metadata row, and leaves no
+ * tombstones in file data.</li>
+ * <li>All CQL statements are prepared once in {@link #init()}.</li>
+ * <li>Optionally, block reads (which are idempotent: blocks are write-once and keyed by unique file ids) use a weak
+ * consistency level with fallback on a miss (see {@link #setFastBlockReads(boolean)}), and hedge requests (see
+ * {@link #setBlockReadHedgeDelayMs(long)}).</li>
+ * <li>Locks are lease locks: a row in table {@link #tableMetadata} inserted with a lightweight transaction and a TTL
+ * of {@link #getLockLeaseMs()}, renewed in the background, so that the lock of a crashed writer expires.</li>
+ * <li>Directory metadata is listed with one paged query (optionally split into token ranges queried in parallel, see
+ * {@link #setListingParallelism(int)}).</li>
+ * <li>A run of consecutive blocks is fetched with one clustering-range query
+ * ({@code blocknum >= ? AND blocknum < ?}, see {@link #readFileBlocks(FileInfo, int, int)}). Inputs reading a file
+ * sequentially keep up to {@link #getReadConcurrency()} runs of {@link #getReadAheadBlocks()} blocks in
+ * flight.</li>
  * </ul>
  * </p>
  *
@@ -71,24 +129,79 @@ public class CassandraDirectory extends LucextDirectory {
 
     public final static String DEFAULT_TBL_METADATA = "directory_metadata";
     public final static String DEFAULT_TBL_FILEDATA = "filedata";
+    public final static String DEFAULT_TBL_FILEDATA_BUCKETED = "filedata_bucketed";
+    public final static int DEFAULT_BLOCKS_PER_BUCKET = 0;
+    public final static long DEFAULT_GENERATION_PERIOD_MS = 0;
     public final static ConsistencyLevel DEFAULT_CONSISTENCY_LEVEL = DefaultConsistencyLevel.LOCAL_QUORUM;
 
+    /**
+     * This directory's default value of {@link #getReadConcurrency()}, in place of
+     * {@link LucextDirectory#DEFAULT_READ_CONCURRENCY}.
+     *
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_CASSANDRA_READ_CONCURRENCY = 2;
+
+    /**
+     * This directory's default value of {@link #getReadAheadBlocks()}, in place of
+     * {@link LucextDirectory#DEFAULT_READ_AHEAD_BLOCKS}: a run of blocks is fetched with one clustering-range query.
+     *
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_CASSANDRA_READ_AHEAD_BLOCKS = 8;
+    public final static int DEFAULT_RANGE_READ_PAGE_BLOCKS = 16;
+
+    private int rangeReadPageBlocks = DEFAULT_RANGE_READ_PAGE_BLOCKS;
+    public final static int DEFAULT_LISTING_PAGE_SIZE = 1000;
+    public final static int DEFAULT_LISTING_PARALLELISM = 1;
+
+    private int listingPageSize = DEFAULT_LISTING_PAGE_SIZE;
+    private int listingParallelism = DEFAULT_LISTING_PARALLELISM;
+
     private ConsistencyLevel consistencyLevelReadFileData = DEFAULT_CONSISTENCY_LEVEL;
+    private ConsistencyLevel consistencyLevelFastReadFileData = DefaultConsistencyLevel.LOCAL_ONE;
+    private boolean fastBlockReads = false;
+    private long blockReadHedgeDelayMs = 0;
+    private AtomicLong statsHedgedReads = new AtomicLong(0), statsFallbackReads = new AtomicLong(0);
     private ConsistencyLevel consistencyLevelWriteFileData = DEFAULT_CONSISTENCY_LEVEL;
     private ConsistencyLevel consistencyLevelReadFileInfo = DEFAULT_CONSISTENCY_LEVEL;
     private ConsistencyLevel consistencyLevelWriteFileInfo = DEFAULT_CONSISTENCY_LEVEL;
     private ConsistencyLevel consistencyLevelRemoveFileInfo = DEFAULT_CONSISTENCY_LEVEL;
     private ConsistencyLevel consistencyLevelRemoveFileData = DEFAULT_CONSISTENCY_LEVEL;
-    private ConsistencyLevel consistencyLevelLock = DefaultConsistencyLevel.LOCAL_SERIAL;
+    private ConsistencyLevel consistencyLevelLock = DEFAULT_CONSISTENCY_LEVEL;
+    private ConsistencyLevel serialConsistencyLevelLock = DefaultConsistencyLevel.LOCAL_SERIAL;
 
     private String keyspace;
     private String tableFiledata = DEFAULT_TBL_FILEDATA;
+    private String tableFiledataBucketed = DEFAULT_TBL_FILEDATA_BUCKETED;
+    private int blocksPerBucket = DEFAULT_BLOCKS_PER_BUCKET;
+    private long generationPeriodMs = DEFAULT_GENERATION_PERIOD_MS;
+    private boolean createSchema = false, checkSchema = false;
     private String tableMetadata = DEFAULT_TBL_METADATA;
     public final static String COL_FILE_NAME = "name";
     public final static String COL_FILE_SIZE = "size";
     public final static String COL_FILE_ID = "id";
     public final static String COL_BLOCK_NUM = "blocknum";
     public final static String COL_BLOCK_DATA = "blockdata";
+    public final static String COL_BUCKET = "bucket";
+
+    /*
+     * Id of a file stored in bucketed layout is prefixed with "b<blocks-per-bucket>." (file ids are otherwise hex
+     * strings, with no dot).
+     */
+    private final static String BUCKETED_ID_PREFIX = "b";
+
+    /*
+     * Id of a file stored in a generation table is prefixed with "g<generation>.", the table is named
+     * "<table-filedata>_g<generation>".
+     */
+    private final static String GENERATION_ID_PREFIX = "g";
+    private final static String GENERATION_TABLE_SUFFIX = "_g";
+
+    /*
+     * Max number of partition deletes of one file sent at a time, see discardFileData(FileInfo).
+     */
+    private final static int MAX_DATA_DELETES_IN_FLIGHT = 16;
 
     private String CQL_REMOVE_FILEINFO = "DELETE FROM {0} WHERE " + COL_FILE_NAME + "=?";
     private String CQL_REMOVE_FILEDATA = "DELETE FROM {0} WHERE " + COL_FILE_ID + "=?";
@@ -96,25 +209,93 @@ public class CassandraDirectory extends LucextDirectory {
     private String CQL_LOAD_FILEDATA =
             "SELECT " + StringUtils.join(new String[] { COL_FILE_ID, COL_BLOCK_NUM, COL_BLOCK_DATA }, ",")
                     + " FROM {0} WHERE " + COL_FILE_ID + "=? AND " + COL_BLOCK_NUM + "=?";
+    private String CQL_LOAD_FILEDATA_RANGE =
+            "SELECT " + StringUtils.join(new String[] { COL_BLOCK_NUM, COL_BLOCK_DATA }, ",") + " FROM {0} WHERE "
+                    + COL_FILE_ID + "=? AND " + COL_BLOCK_NUM + ">=? AND " + COL_BLOCK_NUM + "<?";
+    private String CQL_LOAD_FILEDATA_BUCKETED =
+            "SELECT " + StringUtils.join(new String[] { COL_FILE_ID, COL_BLOCK_NUM, COL_BLOCK_DATA }, ",")
+                    + " FROM {0} WHERE " + COL_FILE_ID + "=? AND " + COL_BUCKET + "=? AND " + COL_BLOCK_NUM + "=?";
+    private String CQL_LOAD_FILEDATA_RANGE_BUCKETED =
+            "SELECT " + StringUtils.join(new String[] { COL_BLOCK_NUM, COL_BLOCK_DATA }, ",") + " FROM {0} WHERE "
+                    + COL_FILE_ID + "=? AND " + COL_BUCKET + "=? AND " + COL_BLOCK_NUM + ">=? AND " + COL_BLOCK_NUM
+                    + "<?";
+    private String CQL_WRITE_FILEDATA_BUCKETED =
+            "UPDATE {0} SET " + COL_BLOCK_DATA + "=? WHERE " + COL_FILE_ID + "=? AND " + COL_BUCKET + "=? AND "
+                    + COL_BLOCK_NUM + "=?";
+    private String CQL_REMOVE_FILEDATA_BUCKETED =
+            "DELETE FROM {0} WHERE " + COL_FILE_ID + "=? AND " + COL_BUCKET + "=?";
     private String CQL_WRITE_FILEDATA =
             "UPDATE {0} SET " + COL_BLOCK_DATA + "=? WHERE " + COL_FILE_ID + "=? AND " + COL_BLOCK_NUM + "=?";
 
+    /*
+     * Generation tables (see setGenerationPeriodMs) share the layout of table "filedata", statements are formatted per
+     * generation.
+     */
+    private final String CQL_LOAD_FILEDATA_GENERATION = CQL_LOAD_FILEDATA;
+    private final String CQL_LOAD_FILEDATA_RANGE_GENERATION = CQL_LOAD_FILEDATA_RANGE;
+    private final String CQL_WRITE_FILEDATA_GENERATION = CQL_WRITE_FILEDATA;
+
+    private final static String CQL_CREATE_METADATA = "CREATE TABLE IF NOT EXISTS {0} (" + COL_FILE_NAME
+            + " VARCHAR, " + COL_FILE_SIZE + " BIGINT, " + COL_FILE_ID + " VARCHAR, PRIMARY KEY (" + COL_FILE_NAME
+            + ")) WITH {1}";
+    private final static String CQL_CREATE_FILEDATA = "CREATE TABLE IF NOT EXISTS {0} (" + COL_FILE_ID + " VARCHAR, "
+            + COL_BLOCK_NUM + " INT, " + COL_BLOCK_DATA + " BLOB, PRIMARY KEY (" + COL_FILE_ID + ", " + COL_BLOCK_NUM
+            + ")) WITH {1}";
+    private final static String CQL_CREATE_FILEDATA_BUCKETED = "CREATE TABLE IF NOT EXISTS {0} (" + COL_FILE_ID
+            + " VARCHAR, " + COL_BUCKET + " INT, " + COL_BLOCK_NUM + " INT, " + COL_BLOCK_DATA + " BLOB, PRIMARY KEY (("
+            + COL_FILE_ID + ", " + COL_BUCKET + "), " + COL_BLOCK_NUM + ")) WITH {1}";
+    private final static String CQL_GET_TABLE_OPTIONS = "SELECT compaction,compression,caching,bloom_filter_fp_chance"
+            + " FROM system_schema.tables WHERE keyspace_name=? AND table_name=?";
+    private final static String CQL_DROP_FILEDATA_GENERATION = "DROP TABLE IF EXISTS {0}";
+    private final static String CQL_LIST_TABLES = "SELECT table_name FROM system_schema.tables WHERE keyspace_name=?";
+
     private String CQL_GET_FILEINFO =
             "SELECT " + StringUtils.join(new String[] { COL_FILE_NAME, COL_FILE_SIZE, COL_FILE_ID }, ",")
                     + " FROM {0} WHERE " + COL_FILE_NAME + "=?";
-    private String CQL_GET_ALL_FILES = "SELECT " + StringUtils.join(new String[] { COL_FILE_NAME }, ",") + " FROM {0}";
+    private String CQL_GET_ALL_FILES =
+            "SELECT " + StringUtils.join(new String[] { COL_FILE_NAME, COL_FILE_SIZE, COL_FILE_ID }, ",") + " FROM {0}";
+    private String CQL_GET_ALL_FILES_IN_TOKEN_RANGE =
+            "SELECT " + StringUtils.join(new String[] { COL_FILE_NAME, COL_FILE_SIZE, COL_FILE_ID }, ",")
+                    + " FROM {0} WHERE token(" + COL_FILE_NAME + ")>? AND token(" + COL_FILE_NAME + ")<=?";
+    private String CQL_GET_ALL_FILE_NAMES = "SELECT " + COL_FILE_NAME + " FROM {0}";
+    private String CQL_GET_ALL_FILE_NAMES_IN_TOKEN_RANGE =
+            "SELECT " + COL_FILE_NAME + " FROM {0} WHERE token(" + COL_FILE_NAME + ")>? AND token(" + COL_FILE_NAME
+                    + ")<=?";
 
     private String CQL_ENSURE_FILE = "UPDATE {0} SET " + COL_FILE_ID + "=? WHERE " + COL_FILE_NAME + "=?";
     private String CQL_UPDATE_FILEINFO =
             "UPDATE {0} SET " + COL_FILE_SIZE + "=?," + COL_FILE_ID + "=? WHERE " + COL_FILE_NAME + "=?";
 
     private String CQL_LOCK = "INSERT INTO {0} (" + StringUtils.join(new String[] { COL_FILE_NAME, COL_FILE_ID }, ",")
-            + ") VALUES (?, ?) IF NOT EXISTS";
+            + ") VALUES (?, ?) IF NOT EXISTS USING TTL ?";
+    private String CQL_RENEW_LOCK =
+            "UPDATE {0} USING TTL ? SET " + COL_FILE_ID + "=? WHERE " + COL_FILE_NAME + "=? IF " + COL_FILE_ID + "=?";
+    private String CQL_RELEASE_LOCK = "DELETE FROM {0} WHERE " + COL_FILE_NAME + "=? IF " + COL_FILE_ID + "=?";
+
+    private StatementTemplate stmLoadFiledata, stmLoadFiledataRange, stmWriteFiledata, stmRemoveFiledata;
+    private StatementTemplate stmLoadFiledataBucketed, stmLoadFiledataRangeBucketed, stmWriteFiledataBucketed,
+            stmRemoveFiledataBucketed;
+    private volatile boolean bucketedStatementsPrepared = false;
+    private ConcurrentMap<Long, GenerationStatements> generationStatements = new ConcurrentHashMap<>();
+    private volatile long currentGeneration = -1;
+    private Set<Long> createdGenerations = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> generationPrecreator;
+    /*
+     * Ids of generation files whose metadata row has not been written yet (e.g. BulkTransfer writes blocks first):
+     * their generation must not be reclaimed.
+     */
+    private Set<String> pinnedGenerationFileIds = ConcurrentHashMap.newKeySet();
+    private StatementTemplate stmGetFileInfo, stmUpdateFileInfo, stmEnsureFile, stmRemoveFileInfo;
+    private StatementTemplate stmGetAllFiles, stmGetAllFilesInTokenRange, stmGetAllFileNames,
+            stmGetAllFileNamesInTokenRange;
+    private StatementTemplate stmLock, stmRenewLock, stmReleaseLock;
 
     private SessionManager sessionManager;
 
     public CassandraDirectory(SessionManager sessionManager) {
         this.sessionManager = sessionManager;
+        setReadConcurrency(DEFAULT_CASSANDRA_READ_CONCURRENCY);
+        setReadAheadBlocks(DEFAULT_CASSANDRA_READ_AHEAD_BLOCKS);
     }
 
     protected SessionManager getSessionManager() {
@@ -141,6 +322,168 @@ public class CassandraDirectory extends LucextDirectory {
         return this;
     }
 
+    /**
+     * Table to store file data in bucketed layout (see {@link #setBlocksPerBucket(int)}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getTableFiledataBucketed() {
+        return tableFiledataBucketed;
+    }
+
+    /**
+     * Table to store file data in bucketed layout (see {@link #setBlocksPerBucket(int)}).
+     *
+     * @param tableFiledataBucketed
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setTableFiledataBucketed(String tableFiledataBucketed) {
+        this.tableFiledataBucketed = tableFiledataBucketed;
+        return this;
+    }
+
+    /**
+     * If greater than {@code 0}, new files are stored in table {@link #getTableFiledataBucketed()}, partitioned by
+     * {@code (id, bucket)} where a bucket covers this number of blocks. Default value
+     * {@link #DEFAULT_BLOCKS_PER_BUCKET} (one partition per file, in table {@link #getTableFiledata()}).
+     *
+     * <p>
+     * Note: the layout is recorded per file, files written with a different setting (or before the setting was
+     * changed) remain readable.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getBlocksPerBucket() {
+        return blocksPerBucket;
+    }
+
+    /**
+     * If greater than {@code 0}, new files are stored in table {@link #getTableFiledataBucketed()}, partitioned by
+     * {@code (id, bucket)} where a bucket covers this number of blocks. Default value
+     * {@link #DEFAULT_BLOCKS_PER_BUCKET} (one partition per file, in table {@link #getTableFiledata()}).
+     *
+     * <p>
+     * Note: the layout is recorded per file, files written with a different setting (or before the setting was
+     * changed) remain readable.
+     * </p>
+     *
+     * @param blocksPerBucket
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setBlocksPerBucket(int blocksPerBucket) {
+        this.blocksPerBucket = Math.max(0, blocksPerBucket);
+        return this;
+    }
+
+    /**
+     * If greater than {@code 0}, new files are stored in generation-scoped tables
+     * {@code <table-filedata>_g<generation>}, a new generation (table) is started every this number of milliseconds.
+     * Default value {@link #DEFAULT_GENERATION_PERIOD_MS} (no generation tables).
+     *
+     * <p>
+     * Files are write-once and Lucene eventually merges away old segments: when no file references a generation any
+     * more, its table is dropped (see {@link #reclaimGenerations()}) instead of deleting rows, so that segment churn
+     * does not leave tombstones in file data. Deleting a file in a generation table removes only its metadata row.
+     * </p>
+     *
+     * <p>
+     * Notes:
+     * <ul>
+     * <li>Generation tables take precedence over bucketed layout (see {@link #setBlocksPerBucket(int)}).</li>
+     * <li>The layout is recorded per file, files written with a different setting remain readable.</li>
+     * <li>Cassandra snapshots dropped tables if {@code auto_snapshot} is enabled.</li>
+     * </ul>
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getGenerationPeriodMs() {
+        return generationPeriodMs;
+    }
+
+    /**
+     * If greater than {@code 0}, new files are stored in generation-scoped tables
+     * {@code <table-filedata>_g<generation>}, a new generation (table) is started every this number of milliseconds.
+     * Default value {@link #DEFAULT_GENERATION_PERIOD_MS} (no generation tables).
+     *
+     * <p>
+     * Files are write-once and Lucene eventually merges away old segments: when no file references a generation any
+     * more, its table is dropped (see {@link #reclaimGenerations()}) instead of deleting rows, so that segment churn
+     * does not leave tombstones in file data. Deleting a file in a generation table removes only its metadata row.
+     * </p>
+     *
+     * <p>
+     * Notes:
+     * <ul>
+     * <li>Generation tables take precedence over bucketed layout (see {@link #setBlocksPerBucket(int)}).</li>
+     * <li>The layout is recorded per file, files written with a different setting remain readable.</li>
+     * <li>Cassandra snapshots dropped tables if {@code auto_snapshot} is enabled.</li>
+     * </ul>
+     * </p>
+     *
+     * @param generationPeriodMs
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setGenerationPeriodMs(long generationPeriodMs) {
+        this.generationPeriodMs = Math.max(0, generationPeriodMs);
+        return this;
+    }
+
+    /**
+     * If {@code true}, {@link #init()} creates the tables (if they do not exist) with recommended options (see
+     * {@link #getSchemaDeviations()}). Default value {@code false}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isCreateSchema() {
+        return createSchema;
+    }
+
+    /**
+     * If {@code true}, {@link #init()} creates the tables (if they do not exist) with recommended options (see
+     * {@link #getSchemaDeviations()}). Default value {@code false}.
+     *
+     * @param createSchema
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setCreateSchema(boolean createSchema) {
+        this.createSchema = createSchema;
+        return this;
+    }
+
+    /**
+     * If {@code true}, {@link #init()} logs a warning for each table option that deviates from the recommended
+     * settings (see {@link #getSchemaDeviations()}). Default value {@code false}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isCheckSchema() {
+        return checkSchema;
+    }
+
+    /**
+     * If {@code true}, {@link #init()} logs a warning for each table option that deviates from the recommended
+     * settings (see {@link #getSchemaDeviations()}). Default value {@code false}.
+     *
+     * @param checkSchema
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setCheckSchema(boolean checkSchema) {
+        this.checkSchema = checkSchema;
+        return this;
+    }
+
     /**
      * Table to store directory metadata.
      *
@@ -201,6 +544,120 @@ public class CassandraDirectory extends LucextDirectory {
         return this;
     }
 
+    /**
+     * ConsistencyLevel for reading file data in fast mode (see {@link #setFastBlockReads(boolean)}), default value
+     * {@code LOCAL_ONE}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public ConsistencyLevel getConsistencyLevelFastReadFileData() {
+        return consistencyLevelFastReadFileData;
+    }
+
+    /**
+     * ConsistencyLevel for reading file data in fast mode (see {@link #setFastBlockReads(boolean)}), default value
+     * {@code LOCAL_ONE}.
+     *
+     * @param consistencyLevelFastReadFileData
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setConsistencyLevelFastReadFileData(ConsistencyLevel consistencyLevelFastReadFileData) {
+        this.consistencyLevelFastReadFileData = consistencyLevelFastReadFileData;
+        return this;
+    }
+
+    /**
+     * Read blocks with {@link #getConsistencyLevelFastReadFileData()}, falling back to
+     * {@link #getConsistencyLevelReadFileData()} if a block is not found? Default value {@code false}.
+     *
+     * <p>
+     * Blocks are written once, keyed by a unique file id, and become reachable only after the file's metadata is
+     * written: a replica either has a block's final content or does not have it at all, so a weak read that finds the
+     * block is as good as a strong one.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isFastBlockReads() {
+        return fastBlockReads;
+    }
+
+    /**
+     * Read blocks with {@link #getConsistencyLevelFastReadFileData()}, falling back to
+     * {@link #getConsistencyLevelReadFileData()} if a block is not found? Default value {@code false}.
+     *
+     * <p>
+     * Blocks are written once, keyed by a unique file id, and become reachable only after the file's metadata is
+     * written: a replica either has a block's final content or does not have it at all, so a weak read that finds the
+     * block is as good as a strong one.
+     * </p>
+     *
+     * @param fastBlockReads
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setFastBlockReads(boolean fastBlockReads) {
+        this.fastBlockReads = fastBlockReads;
+        return this;
+    }
+
+    /**
+     * If greater than {@code 0}: when a block read has not completed after this number of milliseconds, a second
+     * (hedge) request is sent and the first response wins. Default value {@code 0} (no hedging).
+     *
+     * <p>
+     * Note: block reads are also marked idempotent, so that the driver's speculative execution policy (if configured)
+     * applies to them.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getBlockReadHedgeDelayMs() {
+        return blockReadHedgeDelayMs;
+    }
+
+    /**
+     * If greater than {@code 0}: when a block read has not completed after this number of milliseconds, a second
+     * (hedge) request is sent and the first response wins. Default value {@code 0} (no hedging).
+     *
+     * <p>
+     * Note: block reads are also marked idempotent, so that the driver's speculative execution policy (if configured)
+     * applies to them.
+     * </p>
+     *
+     * @param blockReadHedgeDelayMs
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setBlockReadHedgeDelayMs(long blockReadHedgeDelayMs) {
+        this.blockReadHedgeDelayMs = Math.max(0, blockReadHedgeDelayMs);
+        return this;
+    }
+
+    /**
+     * Number of hedge requests sent for block reads.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getNumHedgedReads() {
+        return statsHedgedReads.get();
+    }
+
+    /**
+     * Number of fast block reads that missed and fell back to {@link #getConsistencyLevelReadFileData()}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getNumFallbackReads() {
+        return statsFallbackReads.get();
+    }
+
     /**
      * ConsistencyLevel for writing file data.
      *
@@ -302,7 +759,7 @@ public class CassandraDirectory extends LucextDirectory {
     }
 
     /**
-     * ConsistencyLevel for file locking.
+     * ConsistencyLevel for file locking (commit phase of lightweight transactions).
      *
      * @return
      */
@@ -311,13 +768,127 @@ public class CassandraDirectory extends LucextDirectory {
     }
 
     /**
-     * ConsistencyLevel for file locking.
+     * ConsistencyLevel for file locking (commit phase of lightweight transactions).
+     *
+     * <p>
+     * Note: for backward compatibility, a serial consistency level ({@code SERIAL} or {@code LOCAL_SERIAL}) is used as
+     * {@link #setSerialConsistencyLevelLock(ConsistencyLevel)}.
+     * </p>
      *
      * @param consistencyLevelLock
      * @return
      */
     public CassandraDirectory setConsistencyLevelLock(ConsistencyLevel consistencyLevelLock) {
-        this.consistencyLevelLock = consistencyLevelLock;
+        if (consistencyLevelLock == DefaultConsistencyLevel.SERIAL
+                || consistencyLevelLock == DefaultConsistencyLevel.LOCAL_SERIAL) {
+            this.serialConsistencyLevelLock = consistencyLevelLock;
+        } else {
+            this.consistencyLevelLock = consistencyLevelLock;
+        }
+        return this;
+    }
+
+    /**
+     * Serial ConsistencyLevel for file locking (Paxos phase of lightweight transactions), default value
+     * {@code LOCAL_SERIAL}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public ConsistencyLevel getSerialConsistencyLevelLock() {
+        return serialConsistencyLevelLock;
+    }
+
+    /**
+     * Serial ConsistencyLevel for file locking (Paxos phase of lightweight transactions), default value
+     * {@code LOCAL_SERIAL}.
+     *
+     * @param serialConsistencyLevelLock
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setSerialConsistencyLevelLock(ConsistencyLevel serialConsistencyLevelLock) {
+        this.serialConsistencyLevelLock = serialConsistencyLevelLock;
+        return this;
+    }
+
+    /**
+     * A run of blocks is fetched with one range query, paged by this number of blocks. Default value
+     * {@link #DEFAULT_RANGE_READ_PAGE_BLOCKS}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getRangeReadPageBlocks() {
+        return rangeReadPageBlocks;
+    }
+
+    /**
+     * A run of blocks is fetched with one range query, paged by this number of blocks. Default value
+     * {@link #DEFAULT_RANGE_READ_PAGE_BLOCKS}.
+     *
+     * @param rangeReadPageBlocks
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setRangeReadPageBlocks(int rangeReadPageBlocks) {
+        this.rangeReadPageBlocks = rangeReadPageBlocks > 0 ? rangeReadPageBlocks : DEFAULT_RANGE_READ_PAGE_BLOCKS;
+        return this;
+    }
+
+    /**
+     * Directory metadata is listed with paged queries, fetching this number of rows per page. Default value
+     * {@link #DEFAULT_LISTING_PAGE_SIZE}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getListingPageSize() {
+        return listingPageSize;
+    }
+
+    /**
+     * Directory metadata is listed with paged queries, fetching this number of rows per page. Default value
+     * {@link #DEFAULT_LISTING_PAGE_SIZE}.
+     *
+     * @param listingPageSize
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setListingPageSize(int listingPageSize) {
+        this.listingPageSize = listingPageSize > 0 ? listingPageSize : DEFAULT_LISTING_PAGE_SIZE;
+        return this;
+    }
+
+    /**
+     * If greater than {@code 1}, directory metadata is listed by splitting the token ring into this number of ranges,
+     * queried in parallel. Default value {@link #DEFAULT_LISTING_PARALLELISM}.
+     *
+     * <p>
+     * Note: token ranges are computed for {@code Murmur3Partitioner} (Cassandra's default partitioner).
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getListingParallelism() {
+        return listingParallelism;
+    }
+
+    /**
+     * If greater than {@code 1}, directory metadata is listed by splitting the token ring into this number of ranges,
+     * queried in parallel. Default value {@link #DEFAULT_LISTING_PARALLELISM}.
+     *
+     * <p>
+     * Note: token ranges are computed for {@code Murmur3Partitioner} (Cassandra's default partitioner).
+     * </p>
+     *
+     * @param listingParallelism
+     * @return
+     * @since 1.0.1
+     */
+    public CassandraDirectory setListingParallelism(int listingParallelism) {
+        this.listingParallelism = listingParallelism > 0 ? listingParallelism : DEFAULT_LISTING_PARALLELISM;
         return this;
     }
 
@@ -334,62 +905,692 @@ public class CassandraDirectory extends LucextDirectory {
 
         String tableNameFiledata = hasKeyspace ? keyspace + "." + tableFiledata : tableFiledata;
         CQL_LOAD_FILEDATA = MessageFormat.format(CQL_LOAD_FILEDATA, tableNameFiledata);
+        CQL_LOAD_FILEDATA_RANGE = MessageFormat.format(CQL_LOAD_FILEDATA_RANGE, tableNameFiledata);
         CQL_REMOVE_FILEDATA = MessageFormat.format(CQL_REMOVE_FILEDATA, tableNameFiledata);
         CQL_WRITE_FILEDATA = MessageFormat.format(CQL_WRITE_FILEDATA, tableNameFiledata);
 
+        String tableNameFiledataBucketed = hasKeyspace
+                ? keyspace + "." + tableFiledataBucketed
+                : tableFiledataBucketed;
+        CQL_LOAD_FILEDATA_BUCKETED = MessageFormat.format(CQL_LOAD_FILEDATA_BUCKETED, tableNameFiledataBucketed);
+        CQL_LOAD_FILEDATA_RANGE_BUCKETED = MessageFormat
+                .format(CQL_LOAD_FILEDATA_RANGE_BUCKETED, tableNameFiledataBucketed);
+        CQL_WRITE_FILEDATA_BUCKETED = MessageFormat.format(CQL_WRITE_FILEDATA_BUCKETED, tableNameFiledataBucketed);
+        CQL_REMOVE_FILEDATA_BUCKETED = MessageFormat.format(CQL_REMOVE_FILEDATA_BUCKETED, tableNameFiledataBucketed);
+
         String tableNameMetadata = hasKeyspace ? keyspace + "." + tableMetadata : tableMetadata;
         CQL_ENSURE_FILE = MessageFormat.format(CQL_ENSURE_FILE, tableNameMetadata);
         CQL_GET_FILEINFO = MessageFormat.format(CQL_GET_FILEINFO, tableNameMetadata);
         CQL_GET_ALL_FILES = MessageFormat.format(CQL_GET_ALL_FILES, tableNameMetadata);
+        CQL_GET_ALL_FILES_IN_TOKEN_RANGE = MessageFormat.format(CQL_GET_ALL_FILES_IN_TOKEN_RANGE, tableNameMetadata);
+        CQL_GET_ALL_FILE_NAMES = MessageFormat.format(CQL_GET_ALL_FILE_NAMES, tableNameMetadata);
+        CQL_GET_ALL_FILE_NAMES_IN_TOKEN_RANGE = MessageFormat
+                .format(CQL_GET_ALL_FILE_NAMES_IN_TOKEN_RANGE, tableNameMetadata);
         CQL_REMOVE_FILEINFO = MessageFormat.format(CQL_REMOVE_FILEINFO, tableNameMetadata);
         CQL_UPDATE_FILEINFO = MessageFormat.format(CQL_UPDATE_FILEINFO, tableNameMetadata);
 
         CQL_LOCK = MessageFormat.format(CQL_LOCK, tableNameMetadata);
+        CQL_RENEW_LOCK = MessageFormat.format(CQL_RENEW_LOCK, tableNameMetadata);
+        CQL_RELEASE_LOCK = MessageFormat.format(CQL_RELEASE_LOCK, tableNameMetadata);
 
-        return this;
-    }
+        if (createSchema) {
+            getCassandraSession().execute(
+                    MessageFormat.format(CQL_CREATE_METADATA, tableNameMetadata, metadataTableSpec().toCql()));
+            getCassandraSession().execute(
+                    MessageFormat.format(CQL_CREATE_FILEDATA, tableNameFiledata, filedataTableSpec().toCql()));
+            if (blocksPerBucket > 0) {
+                getCassandraSession().execute(MessageFormat
+                        .format(CQL_CREATE_FILEDATA_BUCKETED, tableNameFiledataBucketed, filedataTableSpec().toCql()));
+            }
+        }
+        if (checkSchema) {
+            try {
+                for (String deviation : getSchemaDeviations()) {
+                    LOGGER.warn(deviation);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Cannot check schema: " + e.getMessage(), e);
+            }
+        }
 
-    protected CqlSession getCassandraSession() {
-        return sessionManager.getSession();
-    }
+        stmLoadFiledata = prepare(CQL_LOAD_FILEDATA, () -> consistencyLevelReadFileData);
+        stmLoadFiledataRange = prepare(CQL_LOAD_FILEDATA_RANGE, () -> consistencyLevelReadFileData);
+        stmWriteFiledata = prepare(CQL_WRITE_FILEDATA, () -> consistencyLevelWriteFileData);
+        stmRemoveFiledata = prepare(CQL_REMOVE_FILEDATA, () -> consistencyLevelRemoveFileData);
+        if (blocksPerBucket > 0) {
+            prepareBucketedStatements();
+        }
+        stmGetFileInfo = prepare(CQL_GET_FILEINFO, () -> consistencyLevelReadFileInfo);
+        stmUpdateFileInfo = prepare(CQL_UPDATE_FILEINFO, () -> consistencyLevelWriteFileInfo);
+        stmEnsureFile = prepare(CQL_ENSURE_FILE, () -> consistencyLevelWriteFileInfo);
+        stmRemoveFileInfo = prepare(CQL_REMOVE_FILEINFO, () -> consistencyLevelRemoveFileInfo);
+        stmGetAllFiles = prepare(CQL_GET_ALL_FILES, () -> consistencyLevelReadFileInfo);
+        stmGetAllFilesInTokenRange = prepare(CQL_GET_ALL_FILES_IN_TOKEN_RANGE, () -> consistencyLevelReadFileInfo);
+        stmGetAllFileNames = prepare(CQL_GET_ALL_FILE_NAMES, () -> consistencyLevelReadFileInfo);
+        stmGetAllFileNamesInTokenRange = prepare(CQL_GET_ALL_FILE_NAMES_IN_TOKEN_RANGE,
+                () -> consistencyLevelReadFileInfo);
+        stmLock = prepare(CQL_LOCK, () -> consistencyLevelLock, () -> serialConsistencyLevelLock);
+        stmRenewLock = prepare(CQL_RENEW_LOCK, () -> consistencyLevelLock, () -> serialConsistencyLevelLock);
+        stmReleaseLock = prepare(CQL_RELEASE_LOCK, () -> consistencyLevelLock, () -> serialConsistencyLevelLock);
 
-    /*----------------------------------------------------------------------*/
+        return this;
+    }
 
-    private FileInfo createFileInfo(Row row) {
-        FileInfo fileInfo = FileInfo.newInstance();
-        fileInfo.setId(row.getString(COL_FILE_ID));
-        fileInfo.setName(row.getString(COL_FILE_NAME));
-        fileInfo.setSize(row.getLong(COL_FILE_SIZE));
-        return fileInfo;
+    /**
+     * Statements of the bucketed layout are prepared in {@link #init()} if the layout is enabled, otherwise on first
+     * access to a bucketed file (so that table {@link #tableFiledataBucketed} is not required until then).
+     */
+    synchronized private void prepareBucketedStatements() {
+        if (!bucketedStatementsPrepared) {
+            stmLoadFiledataBucketed = prepare(CQL_LOAD_FILEDATA_BUCKETED, () -> consistencyLevelReadFileData);
+            stmLoadFiledataRangeBucketed = prepare(CQL_LOAD_FILEDATA_RANGE_BUCKETED,
+                    () -> consistencyLevelReadFileData);
+            stmWriteFiledataBucketed = prepare(CQL_WRITE_FILEDATA_BUCKETED, () -> consistencyLevelWriteFileData);
+            stmRemoveFiledataBucketed = prepare(CQL_REMOVE_FILEDATA_BUCKETED, () -> consistencyLevelRemoveFileData);
+            bucketedStatementsPrepared = true;
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Number of blocks per bucket of a file stored in bucketed layout, {@code 0} if the file is stored in
+     * {@link #tableFiledata}.
      */
-    @Override
-    protected FileInfo getFileInfo(String name) {
-        String CACHE_KEY = cacheKeyFileInfo(name);
-        FileInfo fileInfo = getFromCache(CACHE_KEY, FileInfo.class);
-        if (fileInfo == null) {
-            Row row = sessionManager.executeOne(CQL_GET_FILEINFO, consistencyLevelReadFileInfo, name);
-            if (row != null) {
-                fileInfo = createFileInfo(row);
-                putToCache(CACHE_KEY, fileInfo);
+    private int blocksPerBucketOf(FileInfo fileInfo) {
+        String id = fileInfo.getId();
+        int dot = id != null && id.startsWith(BUCKETED_ID_PREFIX) ? id.indexOf('.') : -1;
+        if (dot > BUCKETED_ID_PREFIX.length()) {
+            try {
+                int result = Integer.parseInt(id.substring(BUCKETED_ID_PREFIX.length(), dot));
+                if (result > 0) {
+                    if (!bucketedStatementsPrepared) {
+                        prepareBucketedStatements();
+                    }
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // not a bucketed file id
             }
         }
-        return fileInfo;
+        return 0;
     }
 
     /**
-     * {@inheritDoc}
+     * Name of the keyspace as stored in {@code system_schema}, {@code null} if no keyspace is set.
      */
-    @Override
-    protected void removeFileInfo(FileInfo fileInfo) {
-        try {
-            sessionManager.execute(CQL_REMOVE_FILEINFO, consistencyLevelRemoveFileInfo, fileInfo.getName());
+    private String keyspaceName() {
+        return !StringUtils.isBlank(keyspace)
+                ? keyspace.toLowerCase()
+                : getCassandraSession().getKeyspace().map(CqlIdentifier::asInternal).orElse(null);
+    }
+
+    /**
+     * Recommended options of a table.
+     */
+    private static class TableSpec {
+        private final String compactionClass, rowsPerPartition;
+        private final int chunkLengthKb;
+        private final double bloomFilterFpChance;
+
+        TableSpec(String compactionClass, int chunkLengthKb, String rowsPerPartition, double bloomFilterFpChance) {
+            this.compactionClass = compactionClass;
+            this.chunkLengthKb = chunkLengthKb;
+            this.rowsPerPartition = rowsPerPartition;
+            this.bloomFilterFpChance = bloomFilterFpChance;
+        }
+
+        String toCql() {
+            return "compaction = {'class': '" + compactionClass + "'}" + (chunkLengthKb > 0
+                    ? " AND compression = {'class': 'LZ4Compressor', 'chunk_length_in_kb': '" + chunkLengthKb + "'}"
+                    : "") + " AND caching = {'keys': 'ALL', 'rows_per_partition': '" + rowsPerPartition + "'}"
+                    + " AND bloom_filter_fp_chance = " + bloomFilterFpChance;
+        }
+
+        void check(String table, Row row, List<String> deviations) {
+            String actualCompaction = row.getMap("compaction", String.class, String.class).get("class");
+            if (actualCompaction == null || !actualCompaction.endsWith(compactionClass)) {
+                deviations.add("Table [" + table + "]: compaction is [" + actualCompaction + "], recommended ["
+                        + compactionClass + "]");
+            }
+            if (chunkLengthKb > 0) {
+                String actualChunkLengthKb = row.getMap("compression", String.class, String.class)
+                        .get("chunk_length_in_kb");
+                if (!String.valueOf(chunkLengthKb).equals(actualChunkLengthKb)) {
+                    deviations.add("Table [" + table + "]: compression chunk_length_in_kb is [" + actualChunkLengthKb
+                            + "], recommended [" + chunkLengthKb + "]");
+                }
+            }
+            Map<String, String> caching = row.getMap("caching", String.class, String.class);
+            if (!"ALL".equalsIgnoreCase(caching.get("keys"))
+                    || !rowsPerPartition.equalsIgnoreCase(caching.get("rows_per_partition"))) {
+                deviations.add("Table [" + table + "]: caching is " + caching + ", recommended {keys=ALL, "
+                        + "rows_per_partition=" + rowsPerPartition + "}");
+            }
+            double actualBloomFilterFpChance = row.getDouble("bloom_filter_fp_chance");
+            if (actualBloomFilterFpChance > bloomFilterFpChance) {
+                deviations.add("Table [" + table + "]: bloom_filter_fp_chance is [" + actualBloomFilterFpChance
+                        + "], recommended [" + bloomFilterFpChance + "]");
+            }
+        }
+    }
+
+    /**
+     * Metadata is small and frequently updated: leveled compaction keeps each row in few sstables, and rows are worth
+     * caching.
+     */
+    private TableSpec metadataTableSpec() {
+        return new TableSpec("LeveledCompactionStrategy", 0, "ALL", 0.01);
+    }
+
+    /**
+     * Blocks are write-once blobs, fetched by exact key: size-tiered compaction (no rewriting of cold data), a
+     * compression chunk covering a whole block (a block read decompresses exactly one chunk), key cache only, and an
+     * accurate bloom filter for point reads.
+     */
+    private TableSpec filedataTableSpec() {
+        int chunkLengthKb = 4;
+        while (chunkLengthKb * 1024 < getBlockSize() && chunkLengthKb < 1024) {
+            chunkLengthKb <<= 1;
+        }
+        return new TableSpec("SizeTieredCompactionStrategy", chunkLengthKb, "NONE", 0.01);
+    }
+
+    /**
+     * Compare options of existing tables against the recommended settings:
+     *
+     * <ul>
+     * <li>metadata table: {@code LeveledCompactionStrategy}, caching all keys and rows, bloom filter false positive
+     * chance at most {@code 0.01}.</li>
+     * <li>file data tables: {@code SizeTieredCompactionStrategy} (blocks are write-once), compression
+     * {@code chunk_length_in_kb} equal to {@link #getBlockSize()} (rounded up to a power of 2, minimum 4), caching keys
+     * only, bloom filter false positive chance at most {@code 0.01}.</li>
+     * </ul>
+     *
+     * @return list of human-readable deviations, empty if none (missing tables are reported as well)
+     * @since 1.0.1
+     */
+    public List<String> getSchemaDeviations() {
+        List<String> deviations = new ArrayList<>();
+        String ks = keyspaceName();
+        if (ks == null) {
+            deviations.add("Cannot check schema: no keyspace");
+            return deviations;
+        }
+        Map<String, TableSpec> tables = new LinkedHashMap<>();
+        tables.put(tableMetadata.toLowerCase(), metadataTableSpec());
+        tables.put(tableFiledata.toLowerCase(), filedataTableSpec());
+        if (blocksPerBucket > 0) {
+            tables.put(tableFiledataBucketed.toLowerCase(), filedataTableSpec());
+        }
+        tables.forEach((table, spec) -> {
+            Row row = getCassandraSession().execute(SimpleStatement.newInstance(CQL_GET_TABLE_OPTIONS, ks, table))
+                    .one();
+            if (row == null) {
+                deviations.add("Table [" + ks + "." + table + "] does not exist");
+            } else {
+                spec.check(ks + "." + table, row, deviations);
+            }
+        });
+        return deviations;
+    }
+
+    /**
+     * Generation of a file stored in a generation table, {@code -1} if the file is not.
+     */
+    private static long generationOf(FileInfo fileInfo) {
+        return generationOf(fileInfo.getId());
+    }
+
+    /**
+     * Generation of a file id, {@code -1} if the file is not stored in a generation table.
+     */
+    static long generationOf(String id) {
+        int dot = id != null && id.startsWith(GENERATION_ID_PREFIX) ? id.indexOf('.') : -1;
+        if (dot > GENERATION_ID_PREFIX.length()) {
+            try {
+                return Long.parseLong(id.substring(GENERATION_ID_PREFIX.length(), dot));
+            } catch (NumberFormatException e) {
+                // not a generation file id
+            }
+        }
+        return -1;
+    }
+
+    private String generationTableName(long generation) {
+        String table = tableFiledata + GENERATION_TABLE_SUFFIX + generation;
+        return !StringUtils.isBlank(keyspace) ? keyspace + "." + table : table;
+    }
+
+    /**
+     * Statements of a generation table, prepared on first access.
+     */
+    private static class GenerationStatements {
+        private final StatementTemplate loadFiledata, loadFiledataRange, writeFiledata;
+
+        GenerationStatements(StatementTemplate loadFiledata, StatementTemplate loadFiledataRange,
+                StatementTemplate writeFiledata) {
+            this.loadFiledata = loadFiledata;
+            this.loadFiledataRange = loadFiledataRange;
+            this.writeFiledata = writeFiledata;
+        }
+    }
+
+    private GenerationStatements generationStatements(long generation) {
+        return generationStatements.computeIfAbsent(generation, gen -> {
+            String table = generationTableName(gen);
+            return new GenerationStatements(
+                    prepare(MessageFormat.format(CQL_LOAD_FILEDATA_GENERATION, table),
+                            () -> consistencyLevelReadFileData),
+                    prepare(MessageFormat.format(CQL_LOAD_FILEDATA_RANGE_GENERATION, table),
+                            () -> consistencyLevelReadFileData),
+                    prepare(MessageFormat.format(CQL_WRITE_FILEDATA_GENERATION, table),
+                            () -> consistencyLevelWriteFileData));
+        });
+    }
+
+    /**
+     * Make a generation the current one. Its table is normally pre-created in background (see
+     * {@link #precreateNextGeneration()}), otherwise (e.g. first file written by this instance) it is created here.
+     * Unreferenced generations are then reclaimed in background.
+     */
+    private long ensureGeneration(long generation) {
+        if (generation != currentGeneration) {
+            startGeneration(generation);
+        }
+        return generation;
+    }
+
+    synchronized private void startGeneration(long generation) {
+        if (generation != currentGeneration) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Starting file data generation [" + generationTableName(generation) + "]");
+            }
+            createGenerationTable(generation);
+            currentGeneration = generation;
+            if (generationPrecreator == null) {
+                long delay = Math.max(1, generationPeriodMs / 2);
+                generationPrecreator = getScheduledExecutor().scheduleWithFixedDelay(
+                        () -> callAsync(() -> {
+                            precreateNextGeneration();
+                            return null;
+                        }).whenComplete((v, t) -> {
+                            if (t != null) {
+                                LOGGER.warn("Error while creating next file data generation: " + t.getMessage(), t);
+                            }
+                        }), 0, delay, TimeUnit.MILLISECONDS);
+            }
+            callAsync(this::reclaimGenerations).whenComplete((numDropped, t) -> {
+                if (t != null) {
+                    LOGGER.warn("Error while reclaiming file data generations: " + t.getMessage(), t);
+                }
+            });
+        }
+    }
+
+    private void createGenerationTable(long generation) {
+        if (!createdGenerations.contains(generation)) {
+            getCassandraSession()
+                    .execute(MessageFormat.format(CQL_CREATE_FILEDATA, generationTableName(generation),
+                            filedataTableSpec().toCql()));
+            createdGenerations.add(generation);
+        }
+    }
+
+    /**
+     * Create the table of the next generation ahead of its start, so that writers do not wait for a schema change at
+     * the generation boundary. Run by the writer every half {@link #getGenerationPeriodMs()}, from the first generation
+     * it starts on.
+     */
+    void precreateNextGeneration() {
+        createGenerationTable(System.currentTimeMillis() / generationPeriodMs + 1);
+    }
+
+    /**
+     * A new generation file is pinned until its metadata row has been written, so that its generation is not reclaimed
+     * while its blocks are being written.
+     */
+    void pinGeneration(FileInfo fileInfo) {
+        pinnedGenerationFileIds.add(fileInfo.getId());
+    }
+
+    /**
+     * Called once a file's metadata row has been written.
+     */
+    void unpinGeneration(FileInfo fileInfo) {
+        pinnedGenerationFileIds.remove(fileInfo.getId());
+    }
+
+    /**
+     * Generations of files whose metadata row has not been written yet.
+     */
+    Set<Long> pinnedGenerations() {
+        Set<Long> result = new HashSet<>();
+        for (String id : pinnedGenerationFileIds) {
+            long generation = generationOf(id);
+            if (generation >= 0) {
+                result.add(generation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check if a generation table can be dropped: it is not referenced by any file, not pinned by a file being written,
+     * not the newest nor the current one, and is older than one full {@link #getGenerationPeriodMs()} grace window.
+     */
+    boolean isReclaimable(long generation, long newest, long now, Set<Long> referenced, Set<Long> pinned) {
+        long graceGeneration = generationPeriodMs > 0 ? now / generationPeriodMs - 1 : Long.MAX_VALUE;
+        return generation != newest && generation != currentGeneration && generation < graceGeneration
+                && !referenced.contains(generation) && !pinned.contains(generation);
+    }
+
+    /**
+     * Drop generation tables (see {@link #setGenerationPeriodMs(long)}) that no file references any more.
+     *
+     * <p>
+     * The current generation and the newest existing generation are never dropped, nor generations of files that are
+     * still being written, nor generations younger than one full {@link #getGenerationPeriodMs()} grace window. This
+     * method is called in
+     * background by the writer each time a new generation is started; if called explicitly, it should be called by
+     * the writer (holder of the write lock).
+     * </p>
+     *
+     * @return number of dropped generation tables
+     * @throws IOException
+     * @since 1.0.1
+     */
+    public int reclaimGenerations() throws IOException {
+        String ks = keyspaceName();
+        if (ks == null) {
+            LOGGER.warn("Cannot reclaim file data generations: no keyspace");
+            return 0;
+        }
+        // pins are taken before listing metadata: a file unpinned meanwhile is then listed
+        Set<Long> pinned = pinnedGenerations();
+        Set<Long> referenced = new HashSet<>();
+        for (FileInfo fileInfo : getAllFileInfo()) {
+            long generation = generationOf(fileInfo);
+            if (generation >= 0) {
+                referenced.add(generation);
+            }
+        }
+        String prefix = (tableFiledata + GENERATION_TABLE_SUFFIX).toLowerCase();
+        List<Long> existing = new ArrayList<>();
+        for (Row row : getCassandraSession().execute(SimpleStatement.newInstance(CQL_LIST_TABLES, ks))) {
+            String table = row.getString(0);
+            if (table != null && table.startsWith(prefix)) {
+                try {
+                    existing.add(Long.parseLong(table.substring(prefix.length())));
+                } catch (NumberFormatException e) {
+                    // not a generation table
+                }
+            }
+        }
+        long newest = existing.stream().mapToLong(Long::longValue).max().orElse(-1);
+        long now = System.currentTimeMillis();
+        int numDropped = 0;
+        for (long generation : existing) {
+            if (isReclaimable(generation, newest, now, referenced, pinned)) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Dropping file data generation [" + generationTableName(generation) + "]");
+                }
+                getCassandraSession()
+                        .execute(MessageFormat.format(CQL_DROP_FILEDATA_GENERATION, generationTableName(generation)));
+                generationStatements.remove(generation);
+                createdGenerations.remove(generation);
+                numDropped++;
+            }
+        }
+        return numDropped;
+    }
+
+    private BoundStatement bindLoadBlock(FileInfo fileInfo, int blockNum) {
+        long generation = generationOf(fileInfo);
+        if (generation >= 0) {
+            return generationStatements(generation).loadFiledata.bind(fileInfo.getId(), blockNum);
+        }
+        int bpb = blocksPerBucketOf(fileInfo);
+        return bpb > 0
+                ? stmLoadFiledataBucketed.bind(fileInfo.getId(), blockNum / bpb, blockNum)
+                : stmLoadFiledata.bind(fileInfo.getId(), blockNum);
+    }
+
+    /**
+     * Statement to load blocks {@code [startBlockNum, endBlockNum)}, which must be in the same partition.
+     */
+    private BoundStatement bindLoadBlockRange(FileInfo fileInfo, int startBlockNum, int endBlockNum) {
+        long generation = generationOf(fileInfo);
+        if (generation >= 0) {
+            return generationStatements(generation).loadFiledataRange.bind(fileInfo.getId(), startBlockNum,
+                    endBlockNum);
+        }
+        int bpb = blocksPerBucketOf(fileInfo);
+        return bpb > 0
+                ? stmLoadFiledataRangeBucketed.bind(fileInfo.getId(), startBlockNum / bpb, startBlockNum, endBlockNum)
+                : stmLoadFiledataRange.bind(fileInfo.getId(), startBlockNum, endBlockNum);
+    }
+
+    private BoundStatement bindWriteBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+        long generation = generationOf(fileInfo);
+        if (generation >= 0) {
+            return generationStatements(generation).writeFiledata.bind(ByteBuffer.wrap(data), fileInfo.getId(),
+                    blockNum);
+        }
+        int bpb = blocksPerBucketOf(fileInfo);
+        return bpb > 0
+                ? stmWriteFiledataBucketed.bind(ByteBuffer.wrap(data), fileInfo.getId(), blockNum / bpb, blockNum)
+                : stmWriteFiledata.bind(ByteBuffer.wrap(data), fileInfo.getId(), blockNum);
+    }
+
+    /**
+     * Statements to remove a file's data: one statement, one per bucket, or none for a file in a generation table
+     * (reclaimed with the whole table, see {@link #reclaimGenerations()}).
+     */
+    private List<BoundStatement> bindRemoveData(FileInfo fileInfo) {
+        List<BoundStatement> result = new ArrayList<>();
+        if (generationOf(fileInfo) >= 0) {
+            return result;
+        }
+        int bpb = blocksPerBucketOf(fileInfo);
+        if (bpb > 0) {
+            long numBlocks = (fileInfo.getSize() + getBlockSize() - 1) / getBlockSize();
+            long numBuckets = Math.max(1, (numBlocks + bpb - 1) / bpb);
+            for (int bucket = 0; bucket < numBuckets; bucket++) {
+                result.add(stmRemoveFiledataBucketed.bind(fileInfo.getId(), bucket));
+            }
+        } else {
+            result.add(stmRemoveFiledata.bind(fileInfo.getId()));
+        }
+        return result;
+    }
+
+    /**
+     * A statement prepared once (in {@link #init()}), bound with its consistency level preset.
+     */
+    private static class StatementTemplate {
+        private final PreparedStatement preparedStatement;
+        private final Supplier<ConsistencyLevel> consistencyLevel, serialConsistencyLevel;
+
+        StatementTemplate(PreparedStatement preparedStatement, Supplier<ConsistencyLevel> consistencyLevel,
+                Supplier<ConsistencyLevel> serialConsistencyLevel) {
+            this.preparedStatement = preparedStatement;
+            this.consistencyLevel = consistencyLevel;
+            this.serialConsistencyLevel = serialConsistencyLevel;
+        }
+
+        BoundStatement bind(Object... values) {
+            BoundStatement stm = preparedStatement.bind(values).setConsistencyLevel(consistencyLevel.get());
+            return serialConsistencyLevel != null
+                    ? stm.setSerialConsistencyLevel(serialConsistencyLevel.get())
+                    : stm;
+        }
+    }
+
+    private StatementTemplate prepare(String cql, Supplier<ConsistencyLevel> consistencyLevel) {
+        return prepare(cql, consistencyLevel, null);
+    }
+
+    private StatementTemplate prepare(String cql, Supplier<ConsistencyLevel> consistencyLevel,
+            Supplier<ConsistencyLevel> serialConsistencyLevel) {
+        return new StatementTemplate(getCassandraSession().prepare(cql), consistencyLevel, serialConsistencyLevel);
+    }
+
+    private ResultSet execute(StatementTemplate template, Object... values) {
+        return getCassandraSession().execute(template.bind(values));
+    }
+
+    private Row executeOne(StatementTemplate template, Object... values) {
+        return execute(template, values).one();
+    }
+
+    private CompletionStage<AsyncResultSet> executeAsync(StatementTemplate template, Object... values) {
+        return getCassandraSession().executeAsync(template.bind(values));
+    }
+
+    protected CqlSession getCassandraSession() {
+        return sessionManager.getSession();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Apply a function that may access the cache to result of an asynchronous statement: the cache might be remote, so
+     * the function is run on {@link #getAsyncExecutor()} instead of a driver's I/O thread.
+     */
+    private <T, R> CompletableFuture<R> thenApplyWithCache(CompletionStage<T> stage, Function<T, R> fn) {
+        return (getCache() != null ? stage.thenApplyAsync(fn, getAsyncExecutor()) : stage.thenApply(fn))
+                .toCompletableFuture();
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Execute a paged query on directory metadata, rows are streamed to the consumer page by page.
+     */
+    private void scanMetadata(StatementTemplate template, Consumer<Row> consumer, Object... values) {
+        Statement<?> stm = template.bind(values).setPageSize(listingPageSize);
+        for (Row row : getCassandraSession().execute(stm)) {
+            consumer.accept(row);
+        }
+    }
+
+    /**
+     * Execute a paged query on directory metadata, one query per token range (see {@link #getListingParallelism()}),
+     * all ranges in parallel.
+     *
+     * <p>
+     * Queries are sent and paged with the driver's async API (see {@link #collectRows(AsyncResultSet, Function,
+     * List)}), so no thread of {@link #getAsyncExecutor()} is blocked: this method is safe to be called from that
+     * pool.
+     * </p>
+     */
+    private <T> List<T> scanMetadataInTokenRanges(StatementTemplate template, Function<Row, T> mapper)
+            throws IOException {
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(listingParallelism);
+        for (long[] range : tokenRanges(listingParallelism)) {
+            Statement<?> stm = template.bind(range[0], range[1]).setPageSize(listingPageSize);
+            futures.add(getCassandraSession().executeAsync(stm)
+                    .thenCompose(rs -> collectRows(rs, mapper, new ArrayList<>())).toCompletableFuture());
+        }
+        List<T> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                result.addAll(await(future));
+            }
+        } catch (IOException | RuntimeException e) {
+            futures.forEach(f -> f.cancel(false));
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Collect rows returned by a paged query, page by page.
+     */
+    private static <T> CompletionStage<List<T>> collectRows(AsyncResultSet rs, Function<Row, T> mapper,
+            List<T> result) {
+        for (Row row : rs.currentPage()) {
+            result.add(mapper.apply(row));
+        }
+        return rs.hasMorePages()
+                ? rs.fetchNextPage().thenCompose(next -> collectRows(next, mapper, result))
+                : CompletableFuture.completedFuture(result);
+    }
+
+    /**
+     * Split the (Murmur3) token ring into {@code numRanges} ranges {@code (start, end]}.
+     */
+    private static List<long[]> tokenRanges(int numRanges) {
+        BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+        BigInteger span = BigInteger.valueOf(Long.MAX_VALUE).subtract(min);
+        List<long[]> result = new ArrayList<>(numRanges);
+        for (int i = 0; i < numRanges; i++) {
+            long start = min.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numRanges)))
+                    .longValue();
+            long end = i == numRanges - 1
+                    ? Long.MAX_VALUE
+                    : min.add(span.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(numRanges)))
+                            .longValue();
+            result.add(new long[] { start, end });
+        }
+        return result;
+    }
+
+    private byte[] padBlock(byte[] dataArr) {
+        return dataArr != null ?
+                (dataArr.length >= getBlockSize() ? dataArr : Arrays.copyOf(dataArr, getBlockSize())) :
+                null;
+    }
+
+    private FileInfo createFileInfo(Row row) {
+        FileInfo fileInfo = FileInfo.newInstance();
+        fileInfo.setId(row.getString(COL_FILE_ID));
+        fileInfo.setName(row.getString(COL_FILE_NAME));
+        fileInfo.setSize(row.getLong(COL_FILE_SIZE));
+        return fileInfo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileInfo getFileInfo(String name) {
+        String CACHE_KEY = cacheKeyFileInfo(name);
+        FileInfo fileInfo = getFromCache(CACHE_KEY, FileInfo.class);
+        if (fileInfo == null) {
+            Row row = executeOne(stmGetFileInfo, name);
+            if (row != null) {
+                fileInfo = createFileInfo(row);
+                putToCache(CACHE_KEY, fileInfo);
+            }
+        }
+        return fileInfo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeFileInfo(FileInfo fileInfo) {
+        try {
+            execute(stmRemoveFileInfo, fileInfo.getName());
         } finally {
-            removeFromCache(cacheKeyFileInfo(fileInfo));
-            removeFromCache(getCacheKeyAllFiles());
+            bumpMetadataGeneration();
         }
     }
 
@@ -404,12 +1605,12 @@ public class CassandraDirectory extends LucextDirectory {
             LOGGER.trace(logMsg);
         }
         try {
-            sessionManager
-                    .execute(CQL_UPDATE_FILEINFO, consistencyLevelWriteFileInfo, fileInfo.getSize(), fileInfo.getId(),
-                            fileInfo.getName());
+            execute(stmUpdateFileInfo, fileInfo.getSize(), fileInfo.getId(), fileInfo.getName());
+            unpinGeneration(fileInfo);
             putToCache(cacheKeyFileInfo(fileInfo), fileInfo);
-        } finally {
-            removeFromCache(getCacheKeyAllFiles());
+        } catch (RuntimeException e) {
+            removeFromCache(cacheKeyFileInfo(fileInfo));
+            throw e;
         }
         return fileInfo;
     }
@@ -418,9 +1619,9 @@ public class CassandraDirectory extends LucextDirectory {
      * {@inheritDoc}
      */
     @Override
-    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) {
+    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) throws IOException {
         String CACHE_KEY = cacheKeyDataBlock(fileInfo, blockNum);
-        byte[] dataArr = getFromCache(CACHE_KEY, byte[].class);
+        byte[] dataArr = getFromCache(CACHE_KEY, byte[].class, true);
         if (LOGGER.isTraceEnabled()) {
             if (dataArr != null) {
                 LOGGER.trace("readFileBlock(" + fileInfo.getId() + ":" + fileInfo.getName() + "/" + blockNum
@@ -431,15 +1632,24 @@ public class CassandraDirectory extends LucextDirectory {
             }
         }
         if (dataArr == null) {
-            Row row = sessionManager
-                    .executeOne(CQL_LOAD_FILEDATA, consistencyLevelReadFileData, fileInfo.getId(), blockNum);
-            ByteBuffer data = row != null ? row.getByteBuffer(COL_BLOCK_DATA) : null;
-            dataArr = data != null ? data.array() : null;
-            putToCache(CACHE_KEY, dataArr);
+            dataArr = await(fetchBlockAsync(fileInfo, blockNum));
+            putToCache(CACHE_KEY, dataArr, true);
         }
-        return dataArr != null ?
-                (dataArr.length >= getBlockSize() ? dataArr : Arrays.copyOf(dataArr, getBlockSize())) :
-                null;
+        return padBlock(dataArr);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Blocks are fetched with one clustering-range query (see {@link #readFileBlocksAsync(FileInfo, int, int)}).
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected List<byte[]> readFileBlocks(FileInfo fileInfo, int startBlockNum, int count) throws IOException {
+        return await(readFileBlocksAsync(fileInfo, startBlockNum, count));
     }
 
     /**
@@ -447,11 +1657,9 @@ public class CassandraDirectory extends LucextDirectory {
      */
     @Override
     protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) {
-        sessionManager
-                .execute(CQL_WRITE_FILEDATA, consistencyLevelWriteFileData, ByteBuffer.wrap(data), fileInfo.getId(),
-                        blockNum);
+        getCassandraSession().execute(bindWriteBlock(fileInfo, blockNum, data));
         String CACHE_KEY = cacheKeyDataBlock(fileInfo, blockNum);
-        putToCache(CACHE_KEY, data);
+        putToCache(CACHE_KEY, data, true);
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("writeFileBlock(" + fileInfo.getId() + ":" + fileInfo.getName() + "/" + blockNum
                     + ") --> update cache");
@@ -460,31 +1668,307 @@ public class CassandraDirectory extends LucextDirectory {
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * Files' metadata is fetched with one paged query, or one paged query per token range if
+     * {@link #getListingParallelism()} is greater than {@code 1}.
+     * </p>
      */
     @Override
-    @SuppressWarnings("unchecked")
-    protected List<FileInfo> getAllFileInfo() {
+    protected List<FileInfo> getAllFileInfo() throws IOException {
         if (LOGGER.isTraceEnabled()) {
             String logMsg = "getAllFileInfo() is called";
             LOGGER.trace(logMsg);
         }
-        String CACHE_KEY = getCacheKeyAllFiles();
-        List<FileInfo> result = getFromCache(CACHE_KEY, List.class);
+        /*
+         * Not cached: file sizes change on every flush, only the list of names is cached (see listFileNames).
+         */
+        if (listingParallelism > 1) {
+            return scanMetadataInTokenRanges(stmGetAllFilesInTokenRange, this::createFileInfo);
+        }
+        List<FileInfo> result = new ArrayList<>();
+        scanMetadata(stmGetAllFiles, row -> result.add(createFileInfo(row)));
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Only file names are fetched (one paged query per token range if {@link #getListingParallelism()} is greater
+     * than {@code 1}), and the list is cached until the next file creation, deletion or rename.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<String> listFileNames() throws IOException {
+        String CACHE_KEY = cacheKeyAllFileNames();
+        List<String> result = getFromCache(CACHE_KEY, List.class);
         if (result == null) {
-            ResultSet rs = sessionManager.execute(CQL_GET_ALL_FILES, consistencyLevelReadFileInfo);
-            List<Row> allRows = rs != null ? rs.all() : new ArrayList<>();
-            result = new ArrayList<>();
-            for (Row row : allRows) {
-                FileInfo fileInfo = getFileInfo(row.getString(COL_FILE_NAME));
-                if (fileInfo != null) {
-                    result.add(fileInfo);
-                }
+            List<String> names;
+            if (listingParallelism > 1) {
+                names = scanMetadataInTokenRanges(stmGetAllFileNamesInTokenRange,
+                        row -> row.getString(COL_FILE_NAME));
+            } else {
+                List<String> rows = new ArrayList<>();
+                scanMetadata(stmGetAllFileNames, row -> rows.add(row.getString(COL_FILE_NAME)));
+                names = rows;
             }
-            putToCache(CACHE_KEY, result);
+            putToCache(CACHE_KEY, names);
+            result = names;
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<FileInfo> getFileInfoAsync(String name) {
+        String CACHE_KEY = cacheKeyFileInfo(name);
+        FileInfo cached = getFromCache(CACHE_KEY, FileInfo.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        return thenApplyWithCache(executeAsync(stmGetFileInfo, name), rs -> {
+            Row row = rs.one();
+            FileInfo fileInfo = row != null ? createFileInfo(row) : null;
+            if (fileInfo != null) {
+                putToCache(CACHE_KEY, fileInfo);
+            }
+            return fileInfo;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<FileInfo> updateFileInfoAsync(FileInfo fileInfo) {
+        return executeAsync(stmUpdateFileInfo, fileInfo.getSize(), fileInfo.getId(), fileInfo.getName())
+                .toCompletableFuture().handleAsync((rs, t) -> {
+                    if (t != null) {
+                        removeFromCache(cacheKeyFileInfo(fileInfo));
+                        throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+                    }
+                    unpinGeneration(fileInfo);
+                    putToCache(cacheKeyFileInfo(fileInfo), fileInfo);
+                    return fileInfo;
+                }, getAsyncExecutor());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<byte[]> readFileBlockAsync(FileInfo fileInfo, int blockNum) {
+        String CACHE_KEY = cacheKeyDataBlock(fileInfo, blockNum);
+        byte[] cached = getFromCache(CACHE_KEY, byte[].class, true);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(padBlock(cached));
+        }
+        return thenApplyWithCache(fetchBlockAsync(fileInfo, blockNum), dataArr -> {
+            putToCache(CACHE_KEY, dataArr, true);
+            return padBlock(dataArr);
+        });
+    }
+
+    /**
+     * Execute a block read (marked idempotent), with {@link #getConsistencyLevelFastReadFileData()} if {@code fast}.
+     */
+    private CompletableFuture<AsyncResultSet> executeBlockRead(BoundStatement stm, boolean fast) {
+        stm = stm.setIdempotent(true);
+        if (fast) {
+            stm = stm.setConsistencyLevel(consistencyLevelFastReadFileData);
+        }
+        return getCassandraSession().executeAsync(stm).toCompletableFuture();
+    }
+
+    /**
+     * Run a block read, sending a hedge request if it has not completed after {@link #getBlockReadHedgeDelayMs()}.
+     * The first successful response wins; the result fails only if all sent requests fail.
+     */
+    private <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> read) {
+        long delayMs = blockReadHedgeDelayMs;
+        if (delayMs <= 0) {
+            return read.get();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<T, Throwable> onDone = (value, t) -> {
+            if (t == null) {
+                result.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        };
+        read.get().whenComplete(onDone);
+        ScheduledFuture<?> hedge = getScheduledExecutor().schedule(() -> {
+            if (!result.isDone()) {
+                statsHedgedReads.incrementAndGet();
+                pending.incrementAndGet();
+                read.get().whenComplete(onDone);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, t) -> hedge.cancel(false));
         return result;
     }
 
+    /**
+     * Run a block read (see {@link #hedged(Supplier)}). In fast mode (see {@link #isFastBlockReads()}), the read is
+     * first done with a weak consistency level, and repeated with {@link #getConsistencyLevelReadFileData()} if the
+     * result is not complete.
+     */
+    private <T> CompletableFuture<T> readBlocksWithFallback(Function<Boolean, CompletableFuture<T>> read,
+            Predicate<T> isComplete) {
+        if (!fastBlockReads) {
+            return hedged(() -> read.apply(false));
+        }
+        return hedged(() -> read.apply(true)).thenCompose(value -> {
+            if (isComplete.test(value)) {
+                return CompletableFuture.completedFuture(value);
+            }
+            statsFallbackReads.incrementAndGet();
+            return hedged(() -> read.apply(false));
+        });
+    }
+
+    /**
+     * Fetch a block from storage (not padded, not cached).
+     */
+    private CompletableFuture<byte[]> fetchBlockAsync(FileInfo fileInfo, int blockNum) {
+        return readBlocksWithFallback(fast -> executeBlockRead(bindLoadBlock(fileInfo, blockNum), fast)
+                .thenApply(rs -> {
+                    Row row = rs.one();
+                    ByteBuffer data = row != null ? row.getByteBuffer(COL_BLOCK_DATA) : null;
+                    return data != null ? data.array() : null;
+                }), dataArr -> dataArr != null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Blocks are fetched with one clustering-range query ({@code blocknum >= ? AND blocknum < ?}) per partition (i.e.
+     * per bucket in bucketed layout), paged by {@link #getRangeReadPageBlocks()} blocks. Fetched blocks are put to
+     * cache.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<List<byte[]>> readFileBlocksAsync(FileInfo fileInfo, int startBlockNum, int count) {
+        if (count == 1) {
+            return readFileBlockAsync(fileInfo, startBlockNum).thenApply(block -> {
+                List<byte[]> result = new ArrayList<>(1);
+                result.add(block);
+                return result;
+            });
+        }
+        byte[][] blocksArr = new byte[count][];
+        List<CompletableFuture<byte[][]>> futures = new ArrayList<>();
+        int bpb = blocksPerBucketOf(fileInfo);
+        long numFileBlocks = (fileInfo.getSize() + getBlockSize() - 1) / getBlockSize();
+        int blockNum = startBlockNum, endBlockNum = startBlockNum + count;
+        while (blockNum < endBlockNum) {
+            int rangeStart = blockNum;
+            int rangeEnd = bpb > 0 ? Math.min(endBlockNum, (blockNum / bpb + 1) * bpb) : endBlockNum;
+            futures.add(readBlocksWithFallback(fast -> {
+                BoundStatement stm = bindLoadBlockRange(fileInfo, rangeStart, rangeEnd)
+                        .setPageSize(rangeReadPageBlocks);
+                return executeBlockRead(stm, fast)
+                        .thenCompose(rs -> collectBlocks(rs, rangeStart, new byte[rangeEnd - rangeStart][]));
+            }, blocks -> {
+                // blocks beyond end of file are not expected to exist
+                for (int i = 0; i < blocks.length; i++) {
+                    if (blocks[i] == null && rangeStart + i < numFileBlocks) {
+                        return false;
+                    }
+                }
+                return true;
+            }).thenApply(blocks -> {
+                System.arraycopy(blocks, 0, blocksArr, rangeStart - startBlockNum, blocks.length);
+                return blocks;
+            }));
+            blockNum = rangeEnd;
+        }
+        CompletionStage<byte[][]> stage = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> blocksArr);
+        return thenApplyWithCache(stage, blocks -> {
+            List<byte[]> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (blocks[i] != null) {
+                    putToCache(cacheKeyDataBlock(fileInfo, startBlockNum + i), blocks[i], true);
+                }
+                result.add(padBlock(blocks[i]));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Collect blocks returned by a range query, page by page.
+     */
+    private CompletionStage<byte[][]> collectBlocks(AsyncResultSet rs, int startBlockNum, byte[][] blocks) {
+        for (Row row : rs.currentPage()) {
+            int index = row.getInt(COL_BLOCK_NUM) - startBlockNum;
+            ByteBuffer data = row.getByteBuffer(COL_BLOCK_DATA);
+            if (index >= 0 && index < blocks.length && data != null) {
+                blocks[index] = data.array();
+            }
+        }
+        return rs.hasMorePages()
+                ? rs.fetchNextPage().thenCompose(next -> collectBlocks(next, startBlockNum, blocks))
+                : CompletableFuture.completedFuture(blocks);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<Void> writeFileBlockAsync(FileInfo fileInfo, int blockNum, byte[] data) {
+        return thenApplyWithCache(
+                getCassandraSession().executeAsync(bindWriteBlock(fileInfo, blockNum, data)), rs -> {
+                    putToCache(cacheKeyDataBlock(fileInfo, blockNum), data, true);
+                    return null;
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * If {@link #getGenerationPeriodMs()} is greater than {@code 0}, the new file is stored in the current generation
+     * table. Otherwise, if {@link #getBlocksPerBucket()} is greater than {@code 0}, the new file is stored in bucketed
+     * layout.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected FileInfo newFileInfo(String name) {
+        FileInfo fileInfo = super.newFileInfo(name);
+        if (generationPeriodMs > 0) {
+            long generation = ensureGeneration(System.currentTimeMillis() / generationPeriodMs);
+            fileInfo.setId(GENERATION_ID_PREFIX + generation + "." + fileInfo.getId());
+            pinGeneration(fileInfo);
+            return fileInfo;
+        }
+        return blocksPerBucket > 0
+                ? fileInfo.setId(BUCKETED_ID_PREFIX + blocksPerBucket + "." + fileInfo.getId())
+                : fileInfo;
+    }
+
     /**
      * Ensures a file's existence.
      *
@@ -496,13 +1980,14 @@ public class CassandraDirectory extends LucextDirectory {
             String logMsg = "ensureFile(" + filename + ") is called";
             LOGGER.trace(logMsg);
         }
-        FileInfo fileInfo = FileInfo.newInstance(filename);
+        FileInfo fileInfo = newFileInfo(filename);
         try {
-            sessionManager
-                    .execute(CQL_ENSURE_FILE, consistencyLevelWriteFileInfo, fileInfo.getId(), fileInfo.getName());
-            putToCache(cacheKeyFileInfo(fileInfo), fileInfo);
+            execute(stmEnsureFile, fileInfo.getId(), fileInfo.getName());
         } finally {
-            removeFromCache(getCacheKeyAllFiles());
+            // written, the row now references the generation; failed, nothing does
+            unpinGeneration(fileInfo);
+            // the row may exist with an old size: cached file info of the previous generation is not used anymore
+            bumpMetadataGeneration();
         }
         // return getFileInfo(filename);
         return fileInfo;
@@ -522,23 +2007,23 @@ public class CassandraDirectory extends LucextDirectory {
                 LOGGER.trace(logMsg);
             }
             try {
-                Statement<?> stmRemoveFileInfo = sessionManager
-                        .bindValues(sessionManager.prepareStatement(CQL_REMOVE_FILEINFO), fileInfo.getName())
-                        .setConsistencyLevel(consistencyLevelRemoveFileInfo);
-                Statement<?> stmRemoveFileData = sessionManager
-                        .bindValues(sessionManager.prepareStatement(CQL_REMOVE_FILEDATA), fileInfo.getId())
-                        .setConsistencyLevel(consistencyLevelRemoveFileData);
-                sessionManager.executeBatch(DefaultBatchType.LOGGED, stmRemoveFileInfo, stmRemoveFileData);
-            } finally {
-                if (getCache() != null) {
-                    removeFromCache(cacheKeyFileInfo(fileInfo));
-                    removeFromCache(cacheKeyFileInfo(getCacheKeyAllFiles()));
-                    long size = fileInfo.getSize();
-                    long numBlocks = (size / getBlockSize()) + (size % getBlockSize() != 0 ? 1 : 0);
-                    for (int i = 0; i < numBlocks; i++) {
-                        removeFromCache(cacheKeyFileInfo(cacheKeyDataBlock(fileInfo, i)));
-                    }
+                /*
+                 * Metadata goes first: once it is gone the file is not visible anymore, and its data (keyed by the
+                 * unique file id) is only garbage, safe to be removed, or retried, statement by statement.
+                 */
+                execute(stmRemoveFileInfo, fileInfo.getName());
+                try {
+                    discardFileData(fileInfo);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Error while removing data of deleted file [" + name + "/" + fileInfo.getId() + "]: "
+                            + e.getMessage(), e);
                 }
+            } finally {
+                /*
+                 * Data blocks are keyed by the (unique) file id and never need invalidation, only metadata does: one
+                 * generation bump, whatever the file size.
+                 */
+                bumpMetadataGeneration();
             }
         } else {
             if (LOGGER.isTraceEnabled()) {
@@ -548,6 +2033,39 @@ public class CassandraDirectory extends LucextDirectory {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Data of a generation file is left for its generation table to be dropped, the file no longer pins its generation
+     * (see {@link #reclaimGenerations()}). Partitions of other files are removed with individual idempotent statements
+     * (one per bucket, at most {@value #MAX_DATA_DELETES_IN_FLIGHT} in flight), rather than in a batch: removing data
+     * of a file whose metadata is gone can be retried partition by partition.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void discardFileData(FileInfo fileInfo) throws IOException {
+        // no more block of this file is to be written
+        unpinGeneration(fileInfo);
+        Deque<CompletableFuture<AsyncResultSet>> inFlight = new ArrayDeque<>();
+        try {
+            for (BoundStatement stm : bindRemoveData(fileInfo)) {
+                if (inFlight.size() >= MAX_DATA_DELETES_IN_FLIGHT) {
+                    await(inFlight.removeFirst());
+                }
+                inFlight.addLast(getCassandraSession().executeAsync(stm.setIdempotent(true)).toCompletableFuture());
+            }
+            while (!inFlight.isEmpty()) {
+                await(inFlight.removeFirst());
+            }
+        } catch (IOException | RuntimeException e) {
+            inFlight.forEach(f -> f.cancel(false));
+            throw e;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -582,7 +2100,7 @@ public class CassandraDirectory extends LucextDirectory {
     }
 
     /**
-     * Cassandra implementation of {@link Lock}.
+     * Cassandra implementation of {@link Lock}: a lease lock, see {@link LucextLock#startLease(long, long)}.
      *
      * @author Thanh Nguyen <btnguyen2k@gmail.com>
      * @since 0.1.0
@@ -592,11 +2110,48 @@ public class CassandraDirectory extends LucextDirectory {
             super(directory, fileName);
         }
 
+        /**
+         * TTL (in seconds) of the lock row, rounded up so that the row never expires before the local lease deadline.
+         */
+        private int ttlSeconds(long leaseMs) {
+            return (int) Math.max(1, (leaseMs + 999) / 1000);
+        }
+
         protected boolean obtainLock() {
             FileInfo fileInfo = getFileInfo();
-            sessionManager.execute(CQL_LOCK, consistencyLevelLock, fileInfo.getName(), fileInfo.getId());
-            FileInfo lockFile = CassandraDirectory.this.getFileInfo(fileInfo.getName());
-            return lockFile != null && StringUtils.equals(lockFile.getId(), fileInfo.getId());
+            long leaseMs = getLockLeaseMs();
+            long now = System.currentTimeMillis();
+            boolean locked = execute(stmLock, fileInfo.getName(), fileInfo.getId(), ttlSeconds(leaseMs)).wasApplied();
+            if (locked) {
+                startLease(now, leaseMs);
+            }
+            return locked;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean renewLease() {
+            FileInfo fileInfo = getFileInfo();
+            return execute(stmRenewLock, ttlSeconds(getLeaseMs()), fileInfo.getId(), fileInfo.getName(),
+                    fileInfo.getId()).wasApplied();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            stopLease();
+            if (isLocked()) {
+                try {
+                    FileInfo fileInfo = getFileInfo();
+                    execute(stmReleaseLock, fileInfo.getName(), fileInfo.getId());
+                } finally {
+                    markLock(false);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,382 @@
+package com.github.ddth.lucext.directory.redis;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.lucext.directory.FileInfo;
+import com.github.ddth.lucext.directory.LucextDirectory;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Redis Cluster implementation of {@link Directory}.
+ *
+ * <p>
+ * Design:
+ * <ul>
+ * <li>A Redis hash (named <code>{&lt;directory-name&gt;}:metadata</code>) to store directory metadata (file info:
+ * {@code id, name, size}), each file info is stored in a field keyed by file name. The key is hash-tagged with the
+ * directory name, so that all metadata keys of a directory are co-located in one slot.</li>
+ * <li>File's data is divided into {@link #getBlockSize()}-byte chunks, and chunks are grouped into block-ranges of
+ * {@link #getBlocksPerKey()} chunks. Each block-range is stored in a Redis hash named
+ * {@code <directory-name>:<file-id>:<range-index>}, where data of each chunk is stored in one hash's field, keyed by
+ * chunk's index (0, 1, 2 and so on). Block-ranges of a file are therefore spread across slots (and cluster nodes),
+ * while every hot-path command (read/write a chunk, read a run of chunks) only touches one key.</li>
+ * <li>Locks are lease locks: each lock is a Redis key (named
+ * <code>{&lt;directory-name&gt;}:lock:&lt;lock-name&gt;</code>) created with {@code SET NX PX} and kept alive by a
+ * background heartbeat, so that a lock held by a crashed process expires after {@link #getLockLeaseMs()}.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class RedisClusterDirectory extends LucextDirectory {
+
+    private Logger LOGGER = LoggerFactory.getLogger(RedisClusterDirectory.class);
+
+    public final static String DEFAULT_DIRECTORY_NAME = "lucext";
+    public final static int DEFAULT_BLOCKS_PER_KEY = 16;
+
+    /**
+     * Default number of blocks fetched in one {@code HMGET} when a file is read sequentially; this directory's
+     * default value of {@link #getReadAheadBlocks()}, in place of {@link LucextDirectory#DEFAULT_READ_AHEAD_BLOCKS}.
+     */
+    public final static int DEFAULT_CLUSTER_READ_AHEAD_BLOCKS = 8;
+
+    private String directoryName = DEFAULT_DIRECTORY_NAME;
+    private byte[] hashDirectoryMetadata = metadataHashFor(directoryName);
+    private int blocksPerKey = DEFAULT_BLOCKS_PER_KEY;
+
+    private final static String SCRIPT_RENEW_LOCK = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+    private final static String SCRIPT_RELEASE_LOCK = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('del', KEYS[1]) else return 0 end";
+
+    private JedisConnector jedisConnector;
+
+    public RedisClusterDirectory(JedisConnector jedisConnector) {
+        this.jedisConnector = jedisConnector;
+        setReadAheadBlocks(DEFAULT_CLUSTER_READ_AHEAD_BLOCKS);
+    }
+
+    protected JedisConnector getJedisConnector() {
+        return jedisConnector;
+    }
+
+    private static byte[] metadataHashFor(String directoryName) {
+        return ("{" + directoryName + "}:metadata").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Name of the directory, used to build Redis key names. Default value {@link #DEFAULT_DIRECTORY_NAME}.
+     *
+     * @return
+     */
+    public String getDirectoryName() {
+        return directoryName;
+    }
+
+    /**
+     * Name of the directory, used to build Redis key names. Default value {@link #DEFAULT_DIRECTORY_NAME}.
+     *
+     * @param directoryName
+     * @return
+     */
+    public RedisClusterDirectory setDirectoryName(String directoryName) {
+        this.directoryName = StringUtils.isBlank(directoryName) ? DEFAULT_DIRECTORY_NAME : directoryName;
+        this.hashDirectoryMetadata = metadataHashFor(this.directoryName);
+        return this;
+    }
+
+    /**
+     * Number of chunks stored in one Redis key (block-range). Default value {@link #DEFAULT_BLOCKS_PER_KEY}.
+     *
+     * <p>
+     * Note: must not be changed once data has been written.
+     * </p>
+     *
+     * @return
+     */
+    public int getBlocksPerKey() {
+        return blocksPerKey;
+    }
+
+    /**
+     * Number of chunks stored in one Redis key (block-range). Default value {@link #DEFAULT_BLOCKS_PER_KEY}.
+     *
+     * <p>
+     * Note: must not be changed once data has been written.
+     * </p>
+     *
+     * @param blocksPerKey
+     * @return
+     */
+    public RedisClusterDirectory setBlocksPerKey(int blocksPerKey) {
+        this.blocksPerKey = blocksPerKey > 0 ? blocksPerKey : DEFAULT_BLOCKS_PER_KEY;
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    private byte[] dataKeyFor(FileInfo fileInfo, int blockNum) {
+        return (directoryName + ":" + fileInfo.getId() + ":" + (blockNum / blocksPerKey))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] blockFieldFor(int blockNum) {
+        return String.valueOf(blockNum).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] metadataKeyFor(FileInfo fileInfo) {
+        return fileInfo.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] metadataKeyFor(String fileName) {
+        return fileName.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private JedisCluster getJedisCluster() {
+        return jedisConnector.getJedisCluster();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileInfo getFileInfo(String name) {
+        byte[] dataArr = getJedisCluster().hget(hashDirectoryMetadata, metadataKeyFor(name));
+        return FileInfo.newInstance(dataArr);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeFileInfo(FileInfo fileInfo) {
+        getJedisCluster().hdel(hashDirectoryMetadata, metadataKeyFor(fileInfo));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileInfo updateFileInfo(FileInfo fileInfo) {
+        if (LOGGER.isTraceEnabled()) {
+            String logMsg = "updateFile(" + fileInfo.getName() + "/" + fileInfo.getId() + "/"
+                    + fileInfo.getSize() + ") is called";
+            LOGGER.trace(logMsg);
+        }
+        getJedisCluster().hset(hashDirectoryMetadata, metadataKeyFor(fileInfo), fileInfo.asBytes());
+        return fileInfo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<FileInfo> getAllFileInfo() {
+        List<FileInfo> result = new ArrayList<>();
+        Map<byte[], byte[]> allFilesMap = getJedisCluster().hgetAll(hashDirectoryMetadata);
+        if (allFilesMap != null) {
+            allFilesMap.forEach((k, data) -> {
+                FileInfo fileInfo = FileInfo.newInstance(data);
+                if (fileInfo != null) {
+                    result.add(fileInfo);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) {
+        return getJedisCluster().hget(dataKeyFor(fileInfo, blockNum), blockFieldFor(blockNum));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Blocks are fetched with one {@code HMGET} per block-range.
+     * </p>
+     */
+    @Override
+    protected List<byte[]> readFileBlocks(FileInfo fileInfo, int startBlockNum, int count) {
+        List<byte[]> result = new ArrayList<>(count);
+        int blockNum = startBlockNum, endBlockNum = startBlockNum + count;
+        while (blockNum < endBlockNum) {
+            int rangeEnd = Math.min(endBlockNum, (blockNum / blocksPerKey + 1) * blocksPerKey);
+            byte[][] FIELDS = new byte[rangeEnd - blockNum][];
+            for (int i = 0; i < FIELDS.length; i++) {
+                FIELDS[i] = blockFieldFor(blockNum + i);
+            }
+            List<byte[]> dataList = getJedisCluster().hmget(dataKeyFor(fileInfo, blockNum), FIELDS);
+            for (int i = 0; i < FIELDS.length; i++) {
+                result.add(dataList != null && i < dataList.size() ? dataList.get(i) : null);
+            }
+            blockNum = rangeEnd;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+        getJedisCluster().hset(dataKeyFor(fileInfo, blockNum), blockFieldFor(blockNum), data);
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteFile(String name) {
+        FileInfo fileInfo = getFileInfo(name);
+        if (fileInfo != null) {
+            if (LOGGER.isTraceEnabled()) {
+                String logMsg = "deleteFile(" + name + "/" + fileInfo.getId() + ") is called";
+                LOGGER.trace(logMsg);
+            }
+            JedisCluster jedisCluster = getJedisCluster();
+            // delete file entry in directory
+            jedisCluster.hdel(hashDirectoryMetadata, metadataKeyFor(fileInfo));
+
+            // delete file data, one block-range key at a time (keys live in different slots)
+            discardFileData(fileInfo);
+        } else {
+            if (LOGGER.isTraceEnabled()) {
+                String logMsg = "deleteFile(" + name + ") is called, but file is not found";
+                LOGGER.trace(logMsg);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void discardFileData(FileInfo fileInfo) {
+        JedisCluster jedisCluster = getJedisCluster();
+        long numBlocks = (fileInfo.getSize() + getBlockSize() - 1) / getBlockSize();
+        for (int blockNum = 0; blockNum < numBlocks; blockNum += blocksPerKey) {
+            jedisCluster.del(dataKeyFor(fileInfo, blockNum));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        FileInfo fileInfo = getFileInfo(name);
+        if (fileInfo == null) {
+            throw new FileNotFoundException("File [" + name + "] not found!");
+        }
+        return new LucextIndexInput(this, fileInfo);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) {
+        FileInfo fileInfo = getFileInfo(name);
+        if (fileInfo == null) {
+            fileInfo = FileInfo.newInstance(name);
+            updateFileInfo(fileInfo);
+        }
+        return new LucextIndexOutput(this, fileInfo);
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Create a new lock instance.
+     */
+    public Lock createLock(String lockName) {
+        return new RedisClusterLock(this, lockName);
+    }
+
+    /**
+     * Redis Cluster implementation of {@link Lock}: a lease lock, stored in its own key (see
+     * {@link RedisClusterDirectory}). The lock's value is the id of the lock's {@link FileInfo}, so that only the
+     * holder can renew or release it.
+     *
+     * @author Thanh Nguyen <btnguyen2k@gmail.com>
+     * @since 1.0.1
+     */
+    private class RedisClusterLock extends LucextLock {
+        public RedisClusterLock(LucextDirectory directory, String fileName) {
+            super(directory, fileName);
+        }
+
+        private String lockKey() {
+            return "{" + directoryName + "}:lock:" + getFileInfo().getName();
+        }
+
+        protected boolean obtainLock() {
+            FileInfo fileInfo = getFileInfo();
+            long leaseMs = getLockLeaseMs();
+            long now = System.currentTimeMillis();
+            String result = getJedisCluster()
+                    .set(lockKey(), fileInfo.getId(), SetParams.setParams().nx().px(leaseMs));
+            boolean locked = "OK".equalsIgnoreCase(result);
+            if (locked) {
+                startLease(now, leaseMs);
+            }
+            return locked;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean renewLease() {
+            Object result = getJedisCluster().eval(SCRIPT_RENEW_LOCK, Collections.singletonList(lockKey()),
+                    Arrays.asList(getFileInfo().getId(), String.valueOf(getLeaseMs())));
+            return result instanceof Long && ((Long) result).longValue() == 1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            stopLease();
+            if (isLocked()) {
+                try {
+                    getJedisCluster().eval(SCRIPT_RELEASE_LOCK, Collections.singletonList(lockKey()),
+                            Collections.singletonList(getFileInfo().getId()));
+                } finally {
+                    markLock(false);
+                }
+            }
+        }
+    }
+}
@@ -5,8 +5,25 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.store.Directory;
@@ -20,9 +37,18 @@ import org.slf4j.LoggerFactory;
 import com.github.ddth.commons.redis.JedisConnector;
 import com.github.ddth.lucext.directory.FileInfo;
 import com.github.ddth.lucext.directory.LucextDirectory;
+import com.github.ddth.lucext.directory.NearCache;
+import com.github.ddth.lucext.utils.IdUtils;
 
+import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.params.SetParams;
 
 /**
  * Redis implementation of {@link Directory}.
@@ -39,6 +65,27 @@ import redis.clients.jedis.Pipeline;
  * in one hash's field, keyed by chunk's index (0, 1, 2 and so on).</li>
  * </ul>
  * </li>
+ * <li>Alternatively (see {@link #setStorageMode(StorageMode)}), data of each file is stored in one single Redis string
+ * (named by file's id), written with {@code SETRANGE}. Files are then read with {@code GETRANGE}, in pages of
+ * {@link #getRangeReadSize()} bytes, so that small random reads do not transfer whole blocks. Note: a Redis string is
+ * limited to 512mb ({@code proto-max-bulk-len}); writing a file past that size fails with an {@link IOException}.</li>
+ * <li>Data of deleted files is freed according to {@link #getDeleteStrategy()}; by default with {@code UNLINK}, so
+ * that deleting a large file does not block Redis.</li>
+ * <li>Locks are lease locks: each lock is a Redis key (named {@code <metadata-hash-name>:lock:<lock-name>}) created
+ * with {@code SET NX PX} and kept alive by a background heartbeat, so that a lock held by a crashed process expires
+ * after {@link #getLockLeaseMs()}. For compatibility with writers before v1.0.1, the holder also sets the lock's field
+ * of the metadata hash, hence a lock (e.g. {@code write.lock}) is still listed by {@link #listAll()}.</li>
+ * <li>The asynchronous SPI (e.g. {@link #readFileBlockAsync(FileInfo, int)}) is served by a few dispatcher threads
+ * (see {@link #getAsyncConnections()}), each of them sends queued commands in batches over one pipelined
+ * connection, so that many requests can be in flight without one blocked thread per request.</li>
+ * <li>Optionally (see {@link #setConnectionAffinity(ConnectionAffinity)}), streaming inputs (opened for merges or
+ * read-once) and outputs pin a connection, instead of borrowing one from the pool for every block. Pool usage is
+ * reported by {@link #getConnectionStats()}.</li>
+ * <li>Optionally (see {@link #setMetadataCacheEnabled(boolean)}), directory metadata is cached in-process. Metadata
+ * changes (create, rename, delete, and a file's final size once its output is closed) are published on a Redis
+ * channel (see {@link #getInvalidationChannel()}); every {@link RedisDirectory} instance sharing the same metadata
+ * hash subscribes to the channel and invalidates its local cache. Cached entries also expire after
+ * {@link #getMetadataCacheTtlMs()}, which bounds staleness should a message be lost.</li>
  * </ul>
  * </p>
  * 
@@ -57,77 +104,1418 @@ public class RedisDirectory extends LucextDirectory {
 
     private JedisConnector jedisConnector;
 
+    /**
+     * How file data is laid out in Redis.
+     *
+     * @since 1.0.1
+     */
+    public enum StorageMode {
+        /**
+         * Each file is a Redis hash, each block of file's data is stored in one field.
+         */
+        HASH,
+        /**
+         * Each file is one Redis string, read and written at byte ranges.
+         */
+        STRING
+    }
+
+    public final static StorageMode DEFAULT_STORAGE_MODE = StorageMode.HASH;
+    public final static int DEFAULT_RANGE_READ_SIZE = 4 * 1024; // 4kb
+
+    /**
+     * Id of a file stored in {@link StorageMode#STRING} mode is prefixed with this string, so that files written in
+     * different modes can co-exist in the same directory.
+     */
+    private final static String STRING_MODE_ID_PREFIX = "s.";
+
+    /**
+     * Max size of a Redis string (default {@code proto-max-bulk-len}): 512mb.
+     */
+    private final static long MAX_STRING_SIZE = 512L * 1024 * 1024;
+
+    private StorageMode storageMode = DEFAULT_STORAGE_MODE;
+    private int rangeReadSize = DEFAULT_RANGE_READ_SIZE;
+
+    /**
+     * How data of a deleted file is freed.
+     *
+     * @since 1.0.1
+     */
+    public enum DeleteStrategy {
+        /**
+         * {@code DEL} the data key: memory is freed synchronously, which blocks Redis for large files.
+         */
+        DEL,
+        /**
+         * {@code UNLINK} the data key: memory is freed in a background thread of Redis (requires Redis v4.0+).
+         */
+        UNLINK,
+        /**
+         * Data is removed in the background with {@code HDEL}s of bounded size (see {@link #getDeleteChunkBytes()}).
+         * Until then, the deletion is recorded in Redis, so that it can be resumed (see
+         * {@link RedisDirectory#resumePendingDeletes()}).
+         */
+        INCREMENTAL
+    }
+
+    public final static DeleteStrategy DEFAULT_DELETE_STRATEGY = DeleteStrategy.UNLINK;
+    public final static long DEFAULT_DELETE_CHUNK_BYTES = 4 * 1024 * 1024; // 4mb
+
+    /**
+     * With {@link DeleteStrategy#INCREMENTAL}: a failed deletion of a file's data is retried this many times, with
+     * exponential backoff, before falling back to {@code UNLINK}.
+     */
+    private final static int DELETE_MAX_RETRIES = 3;
+    private final static long DELETE_RETRY_BACKOFF_MS = 100;
+
+    private DeleteStrategy deleteStrategy = DEFAULT_DELETE_STRATEGY;
+    private long deleteChunkBytes = DEFAULT_DELETE_CHUNK_BYTES;
+    private ExecutorService deleteExecutor;
+    private AtomicLong pendingDeleteBytes = new AtomicLong(0), deletedBytes = new AtomicLong(0);
+
+    /**
+     * Connection affinity of streaming inputs and outputs.
+     *
+     * @since 1.0.1
+     */
+    public enum ConnectionAffinity {
+        /**
+         * Borrow a connection from the pool for every operation.
+         */
+        NONE,
+        /**
+         * Pin a connection for the stream's lifetime.
+         */
+        LIFETIME,
+        /**
+         * Pin a connection for a batch of {@link #getAffinityBatchSize()} operations.
+         */
+        BATCH
+    }
+
+    public final static ConnectionAffinity DEFAULT_CONNECTION_AFFINITY = ConnectionAffinity.NONE;
+    public final static int DEFAULT_AFFINITY_BATCH_SIZE = 64;
+
+    private ConnectionAffinity connectionAffinity = DEFAULT_CONNECTION_AFFINITY;
+    private int affinityBatchSize = DEFAULT_AFFINITY_BATCH_SIZE;
+    private ThreadLocal<PinnedConnection> pinnedConnection = new ThreadLocal<>();
+    private AtomicLong statsBorrows = new AtomicLong(0), statsBorrowNanos = new AtomicLong(0), statsMaxBorrowNanos = new AtomicLong(
+            0), statsPinnedOps = new AtomicLong(0);
+    private AtomicInteger statsPinnedConnections = new AtomicInteger(0);
+
+    public final static int DEFAULT_SCAN_PAGE_SIZE = 1000;
+
+    private int scanPageSize = DEFAULT_SCAN_PAGE_SIZE;
+
+    public final static int DEFAULT_ASYNC_CONNECTIONS = 2;
+    public final static int DEFAULT_ASYNC_MAX_BATCH_SIZE = 128;
+    private final static long ASYNC_STOP_TIMEOUT_MS = 5000;
+
+    private int asyncConnections = DEFAULT_ASYNC_CONNECTIONS;
+    private int asyncMaxBatchSize = DEFAULT_ASYNC_MAX_BATCH_SIZE;
+    private BlockingQueue<PipelinedCommand> asyncQueue = new LinkedBlockingQueue<>();
+    private List<Thread> asyncDispatchers = new CopyOnWriteArrayList<>();
+    /**
+     * Commands are queued under the read lock, {@link #destroy()} stops the dispatchers under the write lock: a
+     * command is never queued once the dispatchers are gone.
+     */
+    private ReadWriteLock asyncLock = new ReentrantReadWriteLock();
+
+    /**
+     * Default number of blocks fetched in one {@code HMGET} when a file is read sequentially; this directory's
+     * default value of {@link #getReadAheadBlocks()}, in place of {@link LucextDirectory#DEFAULT_READ_AHEAD_BLOCKS}.
+     *
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_REDIS_READ_AHEAD_BLOCKS = 8;
+
+    public final static long DEFAULT_METADATA_CACHE_TTL_MS = 60000;
+    public final static long DEFAULT_METADATA_CACHE_MAX_BYTES = 16 * 1024 * 1024; // 16mb
+    private final static String CACHE_KEY_ALL_FILES = "*";
+
+    /**
+     * Id of a lease lock is prefixed with this string, so that the lock's field in the metadata hash set by a lease
+     * holder can be told apart from one set by a writer before v1.0.1 (see {@link RedisLock}).
+     */
+    private final static String LEASE_LOCK_ID_PREFIX = "lease.";
+
+    private final static String SCRIPT_RENEW_LOCK = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+    private final static String SCRIPT_RELEASE_LOCK = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('del', KEYS[1]) else return 0 end";
+
+    private boolean metadataCacheEnabled = false;
+    private long metadataCacheTtlMs = DEFAULT_METADATA_CACHE_TTL_MS;
+    private String invalidationChannel;
+    private NearCache metadataCache;
+    private AtomicLong metadataCacheVersion = new AtomicLong(0);
+    private final String nodeId = IdUtils.nextId();
+    private volatile boolean invalidationSubscribed = false, destroyed = false;
+    private volatile JedisPubSub invalidationListener;
+    private Thread invalidationSubscriber;
+
     public RedisDirectory(JedisConnector jedisConnector) {
         this.jedisConnector = jedisConnector;
+        setReadAheadBlocks(DEFAULT_REDIS_READ_AHEAD_BLOCKS);
+    }
+
+    protected JedisConnector getJedisConnector() {
+        return jedisConnector;
+    }
+
+    /**
+     * Name of Redis hash to store directory metadata, default value
+     * {@link #DEFAULT_HASH_DIRECTORY_METADATA}.
+     * 
+     * @return
+     */
+    public String getHashDirectoryMetadata() {
+        return strHashDirectoryMetadata;
+    }
+
+    /**
+     * Name of Redis hash to store directory metadata, default value
+     * {@link #DEFAULT_HASH_DIRECTORY_METADATA}.
+     * 
+     * @param strHashDirectoryMetadata
+     * @return
+     */
+    public RedisDirectory setHashDirectoryMetadata(String strHashDirectoryMetadata) {
+        this.strHashDirectoryMetadata = StringUtils.isBlank(strHashDirectoryMetadata)
+                ? DEFAULT_HASH_DIRECTORY_METADATA
+                : strHashDirectoryMetadata;
+        this.hashDirectoryMetadata = strHashDirectoryMetadata.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    /**
+     * How data of newly created files is laid out in Redis, default value {@link #DEFAULT_STORAGE_MODE}. Existing
+     * files are always read in the mode they were written.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * How data of newly created files is laid out in Redis, default value {@link #DEFAULT_STORAGE_MODE}. Existing
+     * files are always read in the mode they were written.
+     *
+     * @param storageMode
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode != null ? storageMode : DEFAULT_STORAGE_MODE;
+        return this;
+    }
+
+    /**
+     * Minimum number of bytes fetched per {@code GETRANGE} when reading files stored in {@link StorageMode#STRING}
+     * mode, default value {@link #DEFAULT_RANGE_READ_SIZE}. Sequential reads fetch up to
+     * {@link #getReadAheadBlocks()} blocks worth of data at once.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getRangeReadSize() {
+        return rangeReadSize;
+    }
+
+    /**
+     * Minimum number of bytes fetched per {@code GETRANGE} when reading files stored in {@link StorageMode#STRING}
+     * mode, default value {@link #DEFAULT_RANGE_READ_SIZE}. Sequential reads fetch up to
+     * {@link #getReadAheadBlocks()} blocks worth of data at once.
+     *
+     * @param rangeReadSize
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setRangeReadSize(int rangeReadSize) {
+        this.rangeReadSize = rangeReadSize > 0 ? rangeReadSize : DEFAULT_RANGE_READ_SIZE;
+        return this;
+    }
+
+    /**
+     * Should streaming inputs (opened with {@link IOContext.Context#MERGE} or read-once) and outputs pin a
+     * connection? Default value {@link #DEFAULT_CONNECTION_AFFINITY}.
+     *
+     * <p>
+     * Note: each open streaming input/output holds a connection from the pool while pinned, the pool should be sized
+     * accordingly.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public ConnectionAffinity getConnectionAffinity() {
+        return connectionAffinity;
+    }
+
+    /**
+     * Should streaming inputs (opened with {@link IOContext.Context#MERGE} or read-once) and outputs pin a
+     * connection? Default value {@link #DEFAULT_CONNECTION_AFFINITY}.
+     *
+     * <p>
+     * Note: each open streaming input/output holds a connection from the pool while pinned, the pool should be sized
+     * accordingly.
+     * </p>
+     *
+     * @param connectionAffinity
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setConnectionAffinity(ConnectionAffinity connectionAffinity) {
+        this.connectionAffinity = connectionAffinity != null ? connectionAffinity : DEFAULT_CONNECTION_AFFINITY;
+        return this;
+    }
+
+    /**
+     * With {@link ConnectionAffinity#BATCH}: a pinned connection is returned to the pool after this number of
+     * operations. Default value {@link #DEFAULT_AFFINITY_BATCH_SIZE}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getAffinityBatchSize() {
+        return affinityBatchSize;
+    }
+
+    /**
+     * With {@link ConnectionAffinity#BATCH}: a pinned connection is returned to the pool after this number of
+     * operations. Default value {@link #DEFAULT_AFFINITY_BATCH_SIZE}.
+     *
+     * @param affinityBatchSize
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setAffinityBatchSize(int affinityBatchSize) {
+        this.affinityBatchSize = affinityBatchSize > 0 ? affinityBatchSize : DEFAULT_AFFINITY_BATCH_SIZE;
+        return this;
+    }
+
+    /**
+     * Connection pool statistics.
+     *
+     * @author Thanh Nguyen <btnguyen2k@gmail.com>
+     * @since 1.0.1
+     */
+    public static class ConnectionStats {
+        private long borrows, borrowNanos, maxBorrowNanos, pinnedOps;
+        private int pinnedConnections;
+
+        public ConnectionStats(long borrows, long borrowNanos, long maxBorrowNanos, long pinnedOps,
+                int pinnedConnections) {
+            this.borrows = borrows;
+            this.borrowNanos = borrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+            this.pinnedOps = pinnedOps;
+            this.pinnedConnections = pinnedConnections;
+        }
+
+        /**
+         * Number of connections borrowed from the pool.
+         *
+         * @return
+         */
+        public long getBorrows() {
+            return borrows;
+        }
+
+        /**
+         * Total time spent waiting to borrow connections from the pool, in nanoseconds.
+         *
+         * @return
+         */
+        public long getBorrowNanos() {
+            return borrowNanos;
+        }
+
+        /**
+         * Average time spent waiting to borrow a connection from the pool, in nanoseconds.
+         *
+         * @return
+         */
+        public long getAvgBorrowNanos() {
+            return borrows > 0 ? borrowNanos / borrows : 0;
+        }
+
+        /**
+         * Max time spent waiting to borrow a connection from the pool, in nanoseconds.
+         *
+         * @return
+         */
+        public long getMaxBorrowNanos() {
+            return maxBorrowNanos;
+        }
+
+        /**
+         * Number of operations served by pinned connections, without borrowing from the pool.
+         *
+         * @return
+         */
+        public long getPinnedOps() {
+            return pinnedOps;
+        }
+
+        /**
+         * Number of connections currently pinned to streams.
+         *
+         * @return
+         */
+        public int getPinnedConnections() {
+            return pinnedConnections;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "{borrows:" + borrows + ",borrowNanos:" + borrowNanos + ",maxBorrowNanos:" + maxBorrowNanos
+                    + ",pinnedOps:" + pinnedOps + ",pinnedConnections:" + pinnedConnections + "}";
+        }
+    }
+
+    /**
+     * Get connection pool statistics.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public ConnectionStats getConnectionStats() {
+        return new ConnectionStats(statsBorrows.get(), statsBorrowNanos.get(), statsMaxBorrowNanos.get(),
+                statsPinnedOps.get(), statsPinnedConnections.get());
+    }
+
+    /**
+     * Directory's memory usage report.
+     *
+     * @author Thanh Nguyen <btnguyen2k@gmail.com>
+     * @since 1.0.1
+     */
+    public static class MemoryReport {
+        private int numFiles, sampledFiles;
+        private long logicalBytes, storedBytes, metadataBytes;
+
+        public MemoryReport(int numFiles, int sampledFiles, long logicalBytes, long storedBytes, long metadataBytes) {
+            this.numFiles = numFiles;
+            this.sampledFiles = sampledFiles;
+            this.logicalBytes = logicalBytes;
+            this.storedBytes = storedBytes;
+            this.metadataBytes = metadataBytes;
+        }
+
+        /**
+         * Number of files in the directory.
+         *
+         * @return
+         */
+        public int getNumFiles() {
+            return numFiles;
+        }
+
+        /**
+         * Number of files whose data keys were measured with {@code MEMORY USAGE}.
+         *
+         * @return
+         */
+        public int getSampledFiles() {
+            return sampledFiles;
+        }
+
+        /**
+         * Total size of all files.
+         *
+         * @return
+         */
+        public long getLogicalBytes() {
+            return logicalBytes;
+        }
+
+        /**
+         * Memory used by the directory in Redis (file data and metadata), estimated from the sampled files.
+         *
+         * @return
+         */
+        public long getStoredBytes() {
+            return storedBytes;
+        }
+
+        /**
+         * Memory used by the directory's metadata hash.
+         *
+         * @return
+         */
+        public long getMetadataBytes() {
+            return metadataBytes;
+        }
+
+        /**
+         * Memory used in excess of files' data (keys, hash fields, allocator overhead and metadata).
+         *
+         * @return
+         */
+        public long getOverheadBytes() {
+            return storedBytes - logicalBytes;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "{numFiles:" + numFiles + ",sampledFiles:" + sampledFiles + ",logicalBytes:" + logicalBytes
+                    + ",storedBytes:" + storedBytes + ",overheadBytes:" + getOverheadBytes() + ",metadataBytes:"
+                    + metadataBytes + "}";
+        }
+    }
+
+    public final static int DEFAULT_MEMORY_REPORT_SAMPLES = 32;
+
+    private final static ProtocolCommand CMD_MEMORY = () -> "MEMORY".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] ARG_USAGE = "USAGE".getBytes(StandardCharsets.UTF_8);
+
+    private long memoryUsage(Jedis jedis, byte[] KEY) {
+        // Jedis 3.0 has no generic command method on Jedis itself, go through its connection
+        Client client = jedis.getClient();
+        client.sendCommand(CMD_MEMORY, ARG_USAGE, KEY);
+        Object result = client.getOne();
+        return result instanceof Long ? (Long) result : 0;
+    }
+
+    /**
+     * Build the directory's memory report, sampling {@link #DEFAULT_MEMORY_REPORT_SAMPLES} files.
+     *
+     * @return
+     * @since 1.0.1
+     * @see #getMemoryReport(int)
+     */
+    public MemoryReport getMemoryReport() {
+        return getMemoryReport(DEFAULT_MEMORY_REPORT_SAMPLES);
+    }
+
+    /**
+     * Build the directory's memory report (requires Redis v4.0+).
+     *
+     * <p>
+     * Memory usage of files' data keys is measured with {@code MEMORY USAGE} for (at most) {@code maxSamples} files,
+     * evenly spread across files sorted by size, and extrapolated to all files proportionally to their sizes. If
+     * {@code maxSamples <= 0}, all files are measured.
+     * </p>
+     *
+     * @param maxSamples
+     * @return
+     * @since 1.0.1
+     */
+    public MemoryReport getMemoryReport(int maxSamples) {
+        List<FileInfo> allFiles = getAllFileInfo();
+        allFiles.sort(Comparator.comparingLong(FileInfo::getSize));
+        int numFiles = allFiles.size();
+        int numSamples = maxSamples > 0 ? Math.min(maxSamples, numFiles) : numFiles;
+        long logicalBytes = 0, sampledLogicalBytes = 0, sampledStoredBytes = 0, metadataBytes;
+        for (FileInfo fileInfo : allFiles) {
+            logicalBytes += fileInfo.getSize();
+        }
+        try (Jedis jedis = getJedis()) {
+            metadataBytes = memoryUsage(jedis, hashDirectoryMetadata);
+            for (int i = 0; i < numSamples; i++) {
+                FileInfo fileInfo = allFiles.get((int) ((long) i * numFiles / numSamples));
+                sampledLogicalBytes += fileInfo.getSize();
+                sampledStoredBytes += memoryUsage(jedis, dataKeyFor(fileInfo));
+            }
+        }
+        long storedBytes = sampledLogicalBytes > 0
+                ? (long) ((double) sampledStoredBytes * logicalBytes / sampledLogicalBytes)
+                : (numSamples > 0 ? sampledStoredBytes * numFiles / numSamples : 0);
+        return new MemoryReport(numFiles, numSamples, logicalBytes, storedBytes + metadataBytes, metadataBytes);
+    }
+
+    /**
+     * Number of pipelined connections (one dispatcher thread each) serving the asynchronous SPI, default value
+     * {@link #DEFAULT_ASYNC_CONNECTIONS}. Must be set before {@link #init()} is called.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getAsyncConnections() {
+        return asyncConnections;
+    }
+
+    /**
+     * Number of pipelined connections (one dispatcher thread each) serving the asynchronous SPI, default value
+     * {@link #DEFAULT_ASYNC_CONNECTIONS}. Must be set before {@link #init()} is called.
+     *
+     * @param asyncConnections
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setAsyncConnections(int asyncConnections) {
+        this.asyncConnections = asyncConnections > 0 ? asyncConnections : DEFAULT_ASYNC_CONNECTIONS;
+        return this;
+    }
+
+    /**
+     * Directory metadata is listed with {@code HSCAN}, fetching (approximately) this number of entries per call.
+     * Default value {@link #DEFAULT_SCAN_PAGE_SIZE}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getScanPageSize() {
+        return scanPageSize;
+    }
+
+    /**
+     * Directory metadata is listed with {@code HSCAN}, fetching (approximately) this number of entries per call.
+     * Default value {@link #DEFAULT_SCAN_PAGE_SIZE}.
+     *
+     * @param scanPageSize
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setScanPageSize(int scanPageSize) {
+        this.scanPageSize = scanPageSize > 0 ? scanPageSize : DEFAULT_SCAN_PAGE_SIZE;
+        return this;
+    }
+
+    /**
+     * Max number of queued commands sent in one pipeline by the asynchronous SPI, default value
+     * {@link #DEFAULT_ASYNC_MAX_BATCH_SIZE}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getAsyncMaxBatchSize() {
+        return asyncMaxBatchSize;
+    }
+
+    /**
+     * Max number of queued commands sent in one pipeline by the asynchronous SPI, default value
+     * {@link #DEFAULT_ASYNC_MAX_BATCH_SIZE}.
+     *
+     * @param asyncMaxBatchSize
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setAsyncMaxBatchSize(int asyncMaxBatchSize) {
+        this.asyncMaxBatchSize = asyncMaxBatchSize > 0 ? asyncMaxBatchSize : DEFAULT_ASYNC_MAX_BATCH_SIZE;
+        return this;
+    }
+
+    /**
+     * How data of a deleted file is freed, default value {@link #DEFAULT_DELETE_STRATEGY}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public DeleteStrategy getDeleteStrategy() {
+        return deleteStrategy;
+    }
+
+    /**
+     * How data of a deleted file is freed, default value {@link #DEFAULT_DELETE_STRATEGY}.
+     *
+     * @param deleteStrategy
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setDeleteStrategy(DeleteStrategy deleteStrategy) {
+        this.deleteStrategy = deleteStrategy != null ? deleteStrategy : DEFAULT_DELETE_STRATEGY;
+        return this;
+    }
+
+    /**
+     * With {@link DeleteStrategy#INCREMENTAL}: max number of bytes freed by one single command, default value
+     * {@link #DEFAULT_DELETE_CHUNK_BYTES}.
+     *
+     * <p>
+     * Note: a file stored in {@link StorageMode#STRING} mode is one single allocation, and is always freed at once.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDeleteChunkBytes() {
+        return deleteChunkBytes;
+    }
+
+    /**
+     * With {@link DeleteStrategy#INCREMENTAL}: max number of bytes freed by one single command, default value
+     * {@link #DEFAULT_DELETE_CHUNK_BYTES}.
+     *
+     * <p>
+     * Note: a file stored in {@link StorageMode#STRING} mode is one single allocation, and is always freed at once.
+     * </p>
+     *
+     * @param deleteChunkBytes
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setDeleteChunkBytes(long deleteChunkBytes) {
+        this.deleteChunkBytes = deleteChunkBytes > 0 ? deleteChunkBytes : DEFAULT_DELETE_CHUNK_BYTES;
+        return this;
+    }
+
+    /**
+     * Number of bytes of deleted files that are waiting to be freed (with {@link DeleteStrategy#INCREMENTAL}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getPendingDeleteBytes() {
+        return pendingDeleteBytes.get();
+    }
+
+    /**
+     * Total number of bytes of deleted files that have been freed (or handed to Redis to free) by this instance.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDeletedBytes() {
+        return deletedBytes.get();
+    }
+
+    /**
+     * Cache directory metadata in-process, and invalidate it across nodes via Redis pub/sub? Default value
+     * {@code false}.
+     *
+     * <p>
+     * Note: all {@link RedisDirectory} instances sharing the same metadata hash should enable this setting (otherwise
+     * their metadata mutations are not published), and it must be set before {@link #init()} is called.
+     * </p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isMetadataCacheEnabled() {
+        return metadataCacheEnabled;
+    }
+
+    /**
+     * Cache directory metadata in-process, and invalidate it across nodes via Redis pub/sub? Default value
+     * {@code false}.
+     *
+     * <p>
+     * Note: all {@link RedisDirectory} instances sharing the same metadata hash should enable this setting (otherwise
+     * their metadata mutations are not published), and it must be set before {@link #init()} is called.
+     * </p>
+     *
+     * @param metadataCacheEnabled
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setMetadataCacheEnabled(boolean metadataCacheEnabled) {
+        this.metadataCacheEnabled = metadataCacheEnabled;
+        return this;
+    }
+
+    /**
+     * Cached metadata expires after this period, which bounds staleness should an invalidation message be lost.
+     * Default value {@link #DEFAULT_METADATA_CACHE_TTL_MS}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getMetadataCacheTtlMs() {
+        return metadataCacheTtlMs;
+    }
+
+    /**
+     * Cached metadata expires after this period, which bounds staleness should an invalidation message be lost.
+     * Default value {@link #DEFAULT_METADATA_CACHE_TTL_MS}.
+     *
+     * @param metadataCacheTtlMs
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setMetadataCacheTtlMs(long metadataCacheTtlMs) {
+        this.metadataCacheTtlMs = metadataCacheTtlMs;
+        return this;
+    }
+
+    /**
+     * Name of Redis channel to publish metadata mutations, default value
+     * {@code <metadata-hash-name>:changes}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getInvalidationChannel() {
+        return invalidationChannel != null ? invalidationChannel : strHashDirectoryMetadata + ":changes";
+    }
+
+    /**
+     * Name of Redis channel to publish metadata mutations, default value
+     * {@code <metadata-hash-name>:changes}.
+     *
+     * @param invalidationChannel
+     * @return
+     * @since 1.0.1
+     */
+    public RedisDirectory setInvalidationChannel(String invalidationChannel) {
+        this.invalidationChannel = StringUtils.isBlank(invalidationChannel) ? null : invalidationChannel;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RedisDirectory init() {
+        super.init();
+        if (deleteExecutor == null) {
+            deleteExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "RedisDirectory-delete-" + strHashDirectoryMetadata);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        asyncLock.writeLock().lock();
+        try {
+            destroyed = false;
+            if (asyncDispatchers.isEmpty()) {
+                for (int i = 0; i < asyncConnections; i++) {
+                    Thread t = new Thread(this::runAsyncDispatcher,
+                            "RedisDirectory-async-" + strHashDirectoryMetadata + "-" + i);
+                    t.setDaemon(true);
+                    t.start();
+                    asyncDispatchers.add(t);
+                }
+            }
+        } finally {
+            asyncLock.writeLock().unlock();
+        }
+        if (deleteStrategy == DeleteStrategy.INCREMENTAL) {
+            deleteExecutor.execute(() -> {
+                try {
+                    resumePendingDeletes();
+                } catch (Exception e) {
+                    LOGGER.warn("Error while resuming pending deletions: " + e.getMessage(), e);
+                }
+            });
+        }
+        if (metadataCacheEnabled && metadataCache == null) {
+            metadataCache = new NearCache(DEFAULT_METADATA_CACHE_MAX_BYTES, metadataCacheTtlMs);
+            invalidationSubscriber = new Thread(this::runInvalidationSubscriber,
+                    "RedisDirectory-invalidation-" + getInvalidationChannel());
+            invalidationSubscriber.setDaemon(true);
+            invalidationSubscriber.start();
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        List<Thread> dispatchers;
+        asyncLock.writeLock().lock();
+        try {
+            destroyed = true;
+            dispatchers = new ArrayList<>(asyncDispatchers);
+            asyncDispatchers.clear();
+        } finally {
+            asyncLock.writeLock().unlock();
+        }
+        try {
+            JedisPubSub listener = invalidationListener;
+            if (listener != null && listener.isSubscribed()) {
+                listener.unsubscribe();
+            }
+        } catch (Exception e) {
+            LOGGER.warn(e.getMessage(), e);
+        }
+        if (invalidationSubscriber != null) {
+            invalidationSubscriber.interrupt();
+            invalidationSubscriber = null;
+        }
+        metadataCache = null;
+        stopAsyncDispatchers(dispatchers);
+        if (deleteExecutor != null) {
+            try {
+                // queued deletions are still carried out
+                deleteExecutor.shutdown();
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage(), e);
+            } finally {
+                deleteExecutor = null;
+            }
+        }
+        super.destroy();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Subscribe to the invalidation channel; re-subscribe if the connection is lost. The local metadata cache is only
+     * used while the subscription is active, and is cleared whenever the subscription (re)starts or stops.
+     */
+    private void runInvalidationSubscriber() {
+        String channelName = getInvalidationChannel();
+        while (!destroyed) {
+            JedisPubSub listener = new JedisPubSub() {
+                @Override
+                public void onSubscribe(String channel, int subscribedChannels) {
+                    clearMetadataCache();
+                    invalidationSubscribed = true;
+                }
+
+                @Override
+                public void onMessage(String channel, String message) {
+                    int index = message.indexOf(' ');
+                    if (index > 0 && !nodeId.equals(message.substring(0, index))) {
+                        invalidateMetadataCache(message.substring(index + 1));
+                    }
+                }
+            };
+            invalidationListener = listener;
+            try (Jedis jedis = getJedis()) {
+                jedis.subscribe(listener, channelName);
+            } catch (Exception e) {
+                if (!destroyed) {
+                    LOGGER.warn("Subscription to channel [" + channelName + "] lost: " + e.getMessage(), e);
+                }
+            } finally {
+                invalidationSubscribed = false;
+                clearMetadataCache();
+            }
+            if (!destroyed) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private NearCache activeMetadataCache() {
+        NearCache cache = metadataCache;
+        return cache != null && invalidationSubscribed ? cache : null;
+    }
+
+    private void clearMetadataCache() {
+        NearCache cache = metadataCache;
+        if (cache != null) {
+            metadataCacheVersion.incrementAndGet();
+            cache.clear();
+        }
+    }
+
+    private void invalidateMetadataCache(String fileName) {
+        NearCache cache = metadataCache;
+        if (cache != null) {
+            metadataCacheVersion.incrementAndGet();
+            cache.remove(fileName);
+            cache.remove(CACHE_KEY_ALL_FILES);
+        }
+    }
+
+    /**
+     * Queue an invalidation message for other nodes. The local cache entry of the file must be invalidated once the
+     * pipeline has been synced (see {@link #invalidateMetadataCache(String)}): invalidated while the change is only
+     * queued, a concurrent read on this node may cache the old value again, and this node ignores its own messages.
+     *
+     * @param p
+     * @param fileName
+     */
+    private void publishMetadataChange(Pipeline p, String fileName) {
+        if (metadataCache != null) {
+            p.publish(getInvalidationChannel(), nodeId + " " + fileName);
+        }
+    }
+
+    private byte[] dataKeyFor(FileInfo fileInfo) {
+        return fileInfo.getId().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean isStringMode(FileInfo fileInfo) {
+        return fileInfo.getId().startsWith(STRING_MODE_ID_PREFIX);
+    }
+
+    private byte[] metadataKeyFor(FileInfo fileInfo) {
+        return fileInfo.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] metadataKeyFor(String fileName) {
+        return fileName.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Jedis getJedis() {
+        long t = System.nanoTime();
+        Jedis jedis = jedisConnector.getJedis();
+        long d = System.nanoTime() - t;
+        statsBorrows.incrementAndGet();
+        statsBorrowNanos.addAndGet(d);
+        statsMaxBorrowNanos.accumulateAndGet(d, Math::max);
+        return jedis;
+    }
+
+    /**
+     * A connection for one operation: closing it returns the connection to the pool, unless it is pinned to a stream.
+     */
+    private static class JedisRef implements AutoCloseable {
+        private final Jedis jedis;
+        private final boolean pinned;
+
+        JedisRef(Jedis jedis, boolean pinned) {
+            this.jedis = jedis;
+            this.pinned = pinned;
+        }
+
+        @Override
+        public void close() {
+            if (!pinned) {
+                jedis.close();
+            }
+        }
+    }
+
+    /**
+     * Get the connection pinned to the stream being served by the current thread, or borrow one from the pool.
+     */
+    private JedisRef getJedisRef() {
+        PinnedConnection pinned = pinnedConnection.get();
+        if (pinned != null) {
+            statsPinnedOps.incrementAndGet();
+            return new JedisRef(pinned.jedis(), true);
+        }
+        return new JedisRef(getJedis(), false);
+    }
+
+    /**
+     * A connection pinned to a streaming input/output, lazily borrowed.
+     */
+    private class PinnedConnection implements StreamContext {
+        private Jedis jedis;
+        private int ops = 0;
+        private PinnedConnection outer;
+
+        private Jedis jedis() {
+            if (jedis == null) {
+                jedis = getJedis();
+                statsPinnedConnections.incrementAndGet();
+            }
+            return jedis;
+        }
+
+        private void release() {
+            if (jedis != null) {
+                try {
+                    jedis.close();
+                } finally {
+                    jedis = null;
+                    ops = 0;
+                    statsPinnedConnections.decrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void enter() {
+            outer = pinnedConnection.get();
+            pinnedConnection.set(this);
+        }
+
+        @Override
+        public void exit() {
+            if (outer != null) {
+                pinnedConnection.set(outer);
+                outer = null;
+            } else {
+                pinnedConnection.remove();
+            }
+            if (connectionAffinity == ConnectionAffinity.BATCH && ++ops >= affinityBatchSize) {
+                release();
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Pin a connection (see {@link #getConnectionAffinity()}) to outputs, and to inputs opened for merges or
+     * read-once.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected StreamContext openStreamContext(FileInfo fileInfo, IOContext ioContext, boolean forWrite) {
+        if (connectionAffinity == ConnectionAffinity.NONE) {
+            return null;
+        }
+        boolean streaming = forWrite || (ioContext != null && (ioContext.context == IOContext.Context.MERGE
+                || ioContext.readOnce));
+        return streaming ? new PinnedConnection() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileInfo getFileInfo(String name) {
+        NearCache cache = activeMetadataCache();
+        Object cached = cache != null ? cache.get(name) : null;
+        if (cached instanceof FileInfo) {
+            return ((FileInfo) cached).clone();
+        }
+        long version = metadataCacheVersion.get();
+        byte[] FIELD = metadataKeyFor(name);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            byte[] dataArr = jedis.hget(hashDirectoryMetadata, FIELD);
+            FileInfo fileInfo = FileInfo.newInstance(dataArr);
+            if (cache != null && fileInfo != null && metadataCacheVersion.get() == version) {
+                cache.put(name, fileInfo.clone(), false);
+            }
+            return fileInfo;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeFileInfo(FileInfo fileInfo) {
+        byte[] FIELD = metadataKeyFor(fileInfo);
+        try (Jedis jedis = getJedis()) {
+            if (metadataCache != null) {
+                try (Pipeline p = jedis.pipelined()) {
+                    p.hdel(hashDirectoryMetadata, FIELD);
+                    publishMetadataChange(p, fileInfo.getName());
+                    p.sync();
+                } finally {
+                    invalidateMetadataCache(fileInfo.getName());
+                }
+            } else {
+                jedis.hdel(hashDirectoryMetadata, FIELD);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Size updates (one per block flushed by an output) are not published to other nodes (see
+     * {@link #isMetadataCacheEnabled()}): a file is not read elsewhere while being written, and its final metadata
+     * is published once its output has been closed (see {@link #onOutputClosed(FileInfo)}).
+     * </p>
+     */
+    @Override
+    protected FileInfo updateFileInfo(FileInfo fileInfo) {
+        return storeFileInfo(fileInfo, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected FileInfo addFileInfo(FileInfo fileInfo) {
+        return storeFileInfo(fileInfo, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The file's final metadata is published to other nodes (see {@link #isMetadataCacheEnabled()}).
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void onOutputClosed(FileInfo fileInfo) {
+        if (metadataCache != null) {
+            try (Jedis jedis = getJedis()) {
+                try (Pipeline p = jedis.pipelined()) {
+                    publishMetadataChange(p, fileInfo.getName());
+                    p.sync();
+                } finally {
+                    invalidateMetadataCache(fileInfo.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a file's metadata. The local metadata cache entry of the file is always invalidated; other nodes are
+     * told so only if {@code publish} is {@code true} (the file is created or renamed, or its output is closed).
+     *
+     * @param fileInfo
+     * @param publish
+     * @return
+     */
+    private FileInfo storeFileInfo(FileInfo fileInfo, boolean publish) {
+        if (LOGGER.isTraceEnabled()) {
+            String logMsg = "updateFile(" + fileInfo.getName() + "/" + fileInfo.getId() + "/"
+                    + fileInfo.getSize() + ") is called";
+            LOGGER.trace(logMsg);
+        }
+        byte[] FIELD = metadataKeyFor(fileInfo);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            if (publish && metadataCache != null) {
+                try (Pipeline p = jedis.pipelined()) {
+                    p.hset(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
+                    publishMetadataChange(p, fileInfo.getName());
+                    p.sync();
+                } finally {
+                    invalidateMetadataCache(fileInfo.getName());
+                }
+            } else {
+                jedis.hset(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
+                invalidateMetadataCache(fileInfo.getName());
+            }
+            return fileInfo;
+        }
     }
 
-    protected JedisConnector getJedisConnector() {
-        return jedisConnector;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<FileInfo> getAllFileInfo() {
+        NearCache cache = activeMetadataCache();
+        Object cached = cache != null ? cache.get(CACHE_KEY_ALL_FILES) : null;
+        if (cached instanceof List) {
+            List<FileInfo> result = new ArrayList<>();
+            ((List<?>) cached).forEach(fi -> result.add(((FileInfo) fi).clone()));
+            return result;
+        }
+        long version = metadataCacheVersion.get();
+        try (Jedis jedis = getJedis()) {
+            List<FileInfo> result = new ArrayList<>();
+            scanMetadata(jedis, (k, data) -> {
+                FileInfo fileInfo = FileInfo.newInstance(data);
+                if (fileInfo != null) {
+                    result.add(fileInfo);
+                }
+            });
+            if (cache != null && metadataCacheVersion.get() == version) {
+                List<FileInfo> toCache = new ArrayList<>();
+                result.forEach(fi -> toCache.add(fi.clone()));
+                cache.put(CACHE_KEY_ALL_FILES, toCache, false);
+            }
+            return result;
+        }
     }
 
     /**
-     * Name of Redis hash to store directory metadata, default value
-     * {@link #DEFAULT_HASH_DIRECTORY_METADATA}.
-     * 
-     * @return
+     * {@inheritDoc}
+     *
+     * <p>
+     * File names are listed with {@code HSCAN}, without decoding files' metadata.
+     * </p>
+     *
+     * @since 1.0.1
      */
-    public String getHashDirectoryMetadata() {
-        return strHashDirectoryMetadata;
+    @Override
+    protected List<String> listFileNames() {
+        NearCache cache = activeMetadataCache();
+        Object cached = cache != null ? cache.get(CACHE_KEY_ALL_FILES) : null;
+        if (cached instanceof List) {
+            List<String> result = new ArrayList<>();
+            ((List<?>) cached).forEach(fi -> result.add(((FileInfo) fi).getName()));
+            return result;
+        }
+        try (Jedis jedis = getJedis()) {
+            List<String> result = new ArrayList<>();
+            scanMetadata(jedis, (k, data) -> result.add(new String(k, StandardCharsets.UTF_8)));
+            return result;
+        }
     }
 
     /**
-     * Name of Redis hash to store directory metadata, default value
-     * {@link #DEFAULT_HASH_DIRECTORY_METADATA}.
-     * 
-     * @param strHashDirectoryMetadata
-     * @return
+     * Iterate over the metadata hash with {@code HSCAN} (see {@link #getScanPageSize()}), so that large hashes neither
+     * block Redis nor are materialized at once. Entries returned more than once by {@code HSCAN} are skipped.
      */
-    public RedisDirectory setHashDirectoryMetadata(String strHashDirectoryMetadata) {
-        this.strHashDirectoryMetadata = StringUtils.isBlank(strHashDirectoryMetadata)
-                ? DEFAULT_HASH_DIRECTORY_METADATA
-                : strHashDirectoryMetadata;
-        this.hashDirectoryMetadata = strHashDirectoryMetadata.getBytes(StandardCharsets.UTF_8);
-        return this;
+    private void scanMetadata(Jedis jedis, BiConsumer<byte[], byte[]> consumer) {
+        ScanParams params = new ScanParams().count(scanPageSize);
+        Set<String> seen = new HashSet<>();
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        do {
+            ScanResult<Map.Entry<byte[], byte[]>> page = jedis.hscan(hashDirectoryMetadata, cursor, params);
+            for (Map.Entry<byte[], byte[]> entry : page.getResult()) {
+                if (seen.add(new String(entry.getKey(), StandardCharsets.UTF_8))) {
+                    consumer.accept(entry.getKey(), entry.getValue());
+                }
+            }
+            cursor = page.getCursorAsBytes();
+        } while (!Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
     }
 
-    /*----------------------------------------------------------------------*/
+    private byte[] blockFieldFor(int blockNum) {
+        return String.valueOf(blockNum).getBytes(StandardCharsets.UTF_8);
+    }
 
-    private byte[] dataKeyFor(FileInfo fileInfo) {
-        return fileInfo.getId().getBytes(StandardCharsets.UTF_8);
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected FileInfo newFileInfo(String name) {
+        FileInfo fileInfo = super.newFileInfo(name);
+        return storageMode == StorageMode.STRING ? fileInfo.setId(STRING_MODE_ID_PREFIX + fileInfo.getId()) : fileInfo;
     }
 
-    private byte[] metadataKeyFor(FileInfo fileInfo) {
-        return fileInfo.getName().getBytes(StandardCharsets.UTF_8);
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected int getRangeReadSize(FileInfo fileInfo) {
+        return isStringMode(fileInfo) ? rangeReadSize : 0;
     }
 
-    private byte[] metadataKeyFor(String fileName) {
-        return fileName.getBytes(StandardCharsets.UTF_8);
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Files stored in {@link StorageMode#STRING} mode are read with one {@code GETRANGE}.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected byte[] readFileRange(FileInfo fileInfo, long offset, int length) throws IOException {
+        if (!isStringMode(fileInfo)) {
+            return super.readFileRange(fileInfo, offset, length);
+        }
+        if (length <= 0) {
+            return new byte[0];
+        }
+        byte[] KEY = dataKeyFor(fileInfo);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            byte[] dataArr = jedis.getrange(KEY, offset, offset + length - 1);
+            if (dataArr == null || dataArr.length == 0) {
+                return null;
+            }
+            return dataArr.length >= length ? dataArr : Arrays.copyOf(dataArr, length);
+        }
     }
 
-    private Jedis getJedis() {
-        return jedisConnector.getJedis();
+    private long offsetOf(int blockNum) {
+        return (long) blockNum * getBlockSize();
+    }
+
+    /**
+     * A file stored in {@link StorageMode#STRING} mode can not grow past {@link #MAX_STRING_SIZE} bytes: fail with a
+     * clear error rather than letting {@code SETRANGE} fail.
+     */
+    private void ensureStringSize(FileInfo fileInfo, int blockNum, int length) throws IOException {
+        long end = offsetOf(blockNum) + length;
+        if (end > MAX_STRING_SIZE) {
+            throw new IOException("File [" + fileInfo.getName() + "] is too large for StorageMode.STRING: " + end
+                    + " bytes exceeds the Redis string limit of " + MAX_STRING_SIZE
+                    + " bytes; use StorageMode.HASH for this directory.");
+        }
+    }
+
+    /**
+     * Convert result of a {@code GETRANGE} to a block ({@code null} if the range is empty).
+     */
+    private byte[] rangeToBlock(byte[] dataArr) {
+        return dataArr != null && dataArr.length > 0 ? dataArr : null;
+    }
+
+    /**
+     * Split result of a {@code GETRANGE} into {@code count} blocks.
+     */
+    private List<byte[]> rangeToBlocks(byte[] dataArr, int count) {
+        int blockSize = getBlockSize();
+        List<byte[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = i * blockSize;
+            result.add(dataArr != null && from < dataArr.length
+                    ? Arrays.copyOfRange(dataArr, from, Math.min(dataArr.length, from + blockSize))
+                    : null);
+        }
+        return result;
+    }
+
+    /**
+     * Convert result of a {@code HMGET} to {@code count} blocks.
+     */
+    private List<byte[]> fieldsToBlocks(List<byte[]> dataList, int count) {
+        List<byte[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(dataList != null && i < dataList.size() ? dataList.get(i) : null);
+        }
+        return result;
+    }
+
+    private byte[][] blockFieldsFor(int startBlockNum, int count) {
+        byte[][] FIELDS = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            FIELDS[i] = blockFieldFor(startBlockNum + i);
+        }
+        return FIELDS;
+    }
+
+    /**
+     * Trailing bytes of the last block are not part of the file, and are not stored in {@link StorageMode#STRING}
+     * mode.
+     */
+    private byte[] trimBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+        long remaining = fileInfo.getSize() - offsetOf(blockNum);
+        return remaining > 0 && remaining < data.length ? Arrays.copyOf(data, (int) remaining) : data;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected FileInfo getFileInfo(String name) {
-        byte[] FIELD = metadataKeyFor(name);
-        try (Jedis jedis = getJedis()) {
-            byte[] dataArr = jedis.hget(hashDirectoryMetadata, FIELD);
-            return FileInfo.newInstance(dataArr);
+    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) {
+        byte[] KEY = dataKeyFor(fileInfo);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            if (isStringMode(fileInfo)) {
+                long offset = offsetOf(blockNum);
+                return rangeToBlock(jedis.getrange(KEY, offset, offset + getBlockSize() - 1));
+            }
+            return jedis.hget(KEY, blockFieldFor(blockNum));
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * All blocks are fetched with one single {@code HMGET} (or {@code GETRANGE}).
+     * </p>
+     *
+     * @since 1.0.1
      */
     @Override
-    protected void removeFileInfo(FileInfo fileInfo) {
-        byte[] FIELD = metadataKeyFor(fileInfo);
-        try (Jedis jedis = getJedis()) {
-            jedis.hdel(hashDirectoryMetadata, FIELD);
+    protected List<byte[]> readFileBlocks(FileInfo fileInfo, int startBlockNum, int count) {
+        byte[] KEY = dataKeyFor(fileInfo);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            if (isStringMode(fileInfo)) {
+                long offset = offsetOf(startBlockNum);
+                return rangeToBlocks(jedis.getrange(KEY, offset, offset + (long) count * getBlockSize() - 1), count);
+            }
+            return fieldsToBlocks(jedis.hmget(KEY, blockFieldsFor(startBlockNum, count)), count);
         }
     }
 
@@ -135,64 +1523,266 @@ public class RedisDirectory extends LucextDirectory {
      * {@inheritDoc}
      */
     @Override
-    protected FileInfo updateFileInfo(FileInfo fileInfo) {
-        if (LOGGER.isTraceEnabled()) {
-            String logMsg = "updateFile(" + fileInfo.getName() + "/" + fileInfo.getId() + "/"
-                    + fileInfo.getSize() + ") is called";
-            LOGGER.trace(logMsg);
+    protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) throws IOException {
+        byte[] KEY = dataKeyFor(fileInfo);
+        try (JedisRef ref = getJedisRef()) {
+            Jedis jedis = ref.jedis;
+            if (isStringMode(fileInfo)) {
+                byte[] VALUE = trimBlock(fileInfo, blockNum, data);
+                ensureStringSize(fileInfo, blockNum, VALUE.length);
+                jedis.setrange(KEY, offsetOf(blockNum), VALUE);
+            } else {
+                jedis.hset(KEY, blockFieldFor(blockNum), data);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Metadata is fetched via the pipelining dispatcher (see {@link #getAsyncConnections()}).
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<FileInfo> getFileInfoAsync(String name) {
+        NearCache cache = activeMetadataCache();
+        Object cached = cache != null ? cache.get(name) : null;
+        if (cached instanceof FileInfo) {
+            return CompletableFuture.completedFuture(((FileInfo) cached).clone());
         }
+        long version = metadataCacheVersion.get();
+        byte[] FIELD = metadataKeyFor(name);
+        return submitAsync(p -> p.hget(hashDirectoryMetadata, FIELD), dataArr -> {
+            FileInfo fileInfo = FileInfo.newInstance(dataArr);
+            if (cache != null && fileInfo != null && metadataCacheVersion.get() == version) {
+                cache.put(name, fileInfo.clone(), false);
+            }
+            return fileInfo;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Metadata is written via the pipelining dispatcher (see {@link #getAsyncConnections()}).
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected CompletableFuture<FileInfo> updateFileInfoAsync(FileInfo fileInfo) {
         byte[] FIELD = metadataKeyFor(fileInfo);
-        try (Jedis jedis = getJedis()) {
-            jedis.hset(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
+        byte[] VALUE = fileInfo.asBytes();
+        return submitAsync(p -> p.hset(hashDirectoryMetadata, FIELD, VALUE), result -> {
+            // a size update, not published (see updateFileInfo); invalidated once HSET has been run, so that a
+            // concurrent read does not cache the old size again
+            invalidateMetadataCache(fileInfo.getName());
             return fileInfo;
-        }
+        });
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * Block is fetched via the pipelining dispatcher (see {@link #getAsyncConnections()}).
+     * </p>
+     *
+     * @since 1.0.1
      */
     @Override
-    protected List<FileInfo> getAllFileInfo() {
-        try (Jedis jedis = getJedis()) {
-            List<FileInfo> result = new ArrayList<>();
-            Map<byte[], byte[]> allFilesMap = jedis.hgetAll(hashDirectoryMetadata);
-            if (allFilesMap != null) {
-                allFilesMap.forEach((k, data) -> {
-                    FileInfo fileInfo = FileInfo.newInstance(data);
-                    if (fileInfo != null) {
-                        result.add(fileInfo);
-                    }
-                });
-            }
-            return result;
+    protected CompletableFuture<byte[]> readFileBlockAsync(FileInfo fileInfo, int blockNum) {
+        byte[] KEY = dataKeyFor(fileInfo);
+        if (isStringMode(fileInfo)) {
+            long offset = offsetOf(blockNum);
+            return submitAsync(p -> p.getrange(KEY, offset, offset + getBlockSize() - 1), this::rangeToBlock);
         }
+        byte[] FIELD = blockFieldFor(blockNum);
+        return submitAsync(p -> p.hget(KEY, FIELD), data -> data);
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * Blocks are fetched with one {@code HMGET} (or {@code GETRANGE}) via the pipelining dispatcher (see
+     * {@link #getAsyncConnections()}).
+     * </p>
+     *
+     * @since 1.0.1
      */
     @Override
-    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) {
+    protected CompletableFuture<List<byte[]>> readFileBlocksAsync(FileInfo fileInfo, int startBlockNum, int count) {
         byte[] KEY = dataKeyFor(fileInfo);
-        byte[] FIELD = String.valueOf(blockNum).getBytes(StandardCharsets.UTF_8);
-        try (Jedis jedis = getJedis()) {
-            byte[] dataArr = jedis.hget(KEY, FIELD);
-            return dataArr != null
-                    ? (dataArr.length >= getBlockSize() ? dataArr
-                            : Arrays.copyOf(dataArr, getBlockSize()))
-                    : null;
+        if (isStringMode(fileInfo)) {
+            long offset = offsetOf(startBlockNum);
+            return submitAsync(p -> p.getrange(KEY, offset, offset + (long) count * getBlockSize() - 1),
+                    dataArr -> rangeToBlocks(dataArr, count));
         }
+        byte[][] FIELDS = blockFieldsFor(startBlockNum, count);
+        return submitAsync(p -> p.hmget(KEY, FIELDS), dataList -> fieldsToBlocks(dataList, count));
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * Block is written via the pipelining dispatcher (see {@link #getAsyncConnections()}).
+     * </p>
+     *
+     * @since 1.0.1
      */
     @Override
-    protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+    protected CompletableFuture<Void> writeFileBlockAsync(FileInfo fileInfo, int blockNum, byte[] data) {
         byte[] KEY = dataKeyFor(fileInfo);
-        byte[] FIELD = String.valueOf(blockNum).getBytes(StandardCharsets.UTF_8);
+        if (isStringMode(fileInfo)) {
+            long offset = offsetOf(blockNum);
+            byte[] VALUE = trimBlock(fileInfo, blockNum, data);
+            try {
+                ensureStringSize(fileInfo, blockNum, VALUE.length);
+            } catch (IOException e) {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+            return submitAsync(p -> p.setrange(KEY, offset, VALUE), result -> null);
+        }
+        byte[] FIELD = blockFieldFor(blockNum);
+        return submitAsync(p -> p.hset(KEY, FIELD, data), result -> null);
+    }
+
+    /**
+     * A command queued to the pipelining dispatcher.
+     */
+    private interface PipelinedCommand {
+        /**
+         * Queue the command to a pipeline.
+         *
+         * @param p
+         * @return callback to be invoked once the pipeline has been synced
+         */
+        Runnable queue(Pipeline p);
+
+        void fail(Throwable t);
+    }
+
+    /**
+     * Submit a command to the pipelining dispatcher. If the dispatcher is not running (e.g. {@link #init()} has not
+     * been called), the command is executed right away in its own pipeline.
+     *
+     * <p>
+     * Note: the returned future is completed by a dispatcher thread, dependent stages should not block.
+     * </p>
+     *
+     * @param command
+     * @param mapper
+     *         converts the command's response to the future's result
+     * @return
+     */
+    private <R, T> CompletableFuture<T> submitAsync(Function<Pipeline, Response<R>> command, Function<R, T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        PipelinedCommand pipelinedCommand = new PipelinedCommand() {
+            @Override
+            public Runnable queue(Pipeline p) {
+                Response<R> response = command.apply(p);
+                return () -> {
+                    try {
+                        future.complete(mapper.apply(response.get()));
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                };
+            }
+
+            @Override
+            public void fail(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        boolean queued = false;
+        asyncLock.readLock().lock();
+        try {
+            if (!destroyed && !asyncDispatchers.isEmpty()) {
+                queued = asyncQueue.add(pipelinedCommand);
+            }
+        } finally {
+            asyncLock.readLock().unlock();
+        }
+        if (!queued) {
+            executePipelined(Collections.singletonList(pipelinedCommand));
+        }
+        return future;
+    }
+
+    /**
+     * Execute a batch of commands in one pipeline.
+     */
+    private void executePipelined(List<PipelinedCommand> batch) {
+        List<Runnable> callbacks = new ArrayList<>(batch.size());
         try (Jedis jedis = getJedis()) {
-            jedis.hset(KEY, FIELD, data);
+            try (Pipeline p = jedis.pipelined()) {
+                for (PipelinedCommand command : batch) {
+                    callbacks.add(command.queue(p));
+                }
+                p.sync();
+            }
+        } catch (Throwable t) {
+            batch.forEach(command -> command.fail(t));
+            return;
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    /**
+     * Drain queued commands, {@link #getAsyncMaxBatchSize()} commands per pipeline.
+     */
+    private void runAsyncDispatcher() {
+        List<PipelinedCommand> batch = new ArrayList<>();
+        while (!destroyed) {
+            try {
+                PipelinedCommand command = asyncQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (command == null) {
+                    continue;
+                }
+                batch.add(command);
+                asyncQueue.drainTo(batch, asyncMaxBatchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            executePipelined(batch);
+            batch.clear();
+        }
+        failQueuedAsyncCommands();
+    }
+
+    /**
+     * Stop the dispatchers, then fail commands that are still queued, so that no future is left pending.
+     */
+    private void stopAsyncDispatchers(List<Thread> dispatchers) {
+        dispatchers.forEach(Thread::interrupt);
+        for (Thread t : dispatchers) {
+            try {
+                // a dispatcher finishes the batch it is sending before it stops
+                t.join(ASYNC_STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failQueuedAsyncCommands();
+    }
+
+    private void failQueuedAsyncCommands() {
+        IOException e = new IOException("Directory has been closed!");
+        for (PipelinedCommand command = asyncQueue.poll(); command != null; command = asyncQueue.poll()) {
+            command.fail(e);
         }
     }
 
@@ -209,21 +1799,45 @@ public class RedisDirectory extends LucextDirectory {
                 String logMsg = "deleteFile(" + name + "/" + fileInfo.getId() + ") is called";
                 LOGGER.trace(logMsg);
             }
+            byte[] PENDING_DELETE = fileInfo.asBytes();
             try (Jedis jedis = getJedis()) {
                 try (Pipeline p = jedis.pipelined()) {
-                    // delete file entry in directory
                     byte[] KEY_METADATA = metadataKeyFor(fileInfo);
-                    p.hdel(hashDirectoryMetadata, KEY_METADATA);
-
-                    // delete file data
                     byte[] KEY_DATA = dataKeyFor(fileInfo);
-                    p.del(KEY_DATA);
+                    if (deleteStrategy == DeleteStrategy.INCREMENTAL) {
+                        // the file entry is deleted and its deletion recorded at once, so that data is never orphaned
+                        p.multi();
+                        p.hdel(hashDirectoryMetadata, KEY_METADATA);
+                        p.sadd(pendingDeletesKey(), PENDING_DELETE);
+                        p.exec();
+                    } else {
+                        // delete file entry in directory
+                        p.hdel(hashDirectoryMetadata, KEY_METADATA);
+
+                        // delete file data
+                        if (deleteStrategy == DeleteStrategy.DEL) {
+                            p.del(KEY_DATA);
+                        } else {
+                            p.unlink(KEY_DATA);
+                        }
+                    }
+
+                    publishMetadataChange(p, fileInfo.getName());
 
                     /*
                      * No need to call p.sync() because we do not wish to receive any response.
                      */
+                } finally {
+                    // the pipeline has been flushed by close()
+                    invalidateMetadataCache(fileInfo.getName());
                 }
             }
+            if (deleteStrategy == DeleteStrategy.INCREMENTAL) {
+                // file is no longer visible, its data can be removed at leisure
+                scheduleDeleteFileData(fileInfo, PENDING_DELETE);
+            } else {
+                deletedBytes.addAndGet(fileInfo.getSize());
+            }
         } else {
             if (LOGGER.isTraceEnabled()) {
                 String logMsg = "deleteFile(" + name + ") is called, but file is not found";
@@ -232,6 +1846,142 @@ public class RedisDirectory extends LucextDirectory {
         }
     }
 
+    private byte[] pendingDeletesKey() {
+        return (strHashDirectoryMetadata + ":pending-deletes").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void scheduleDeleteFileData(FileInfo fileInfo, byte[] pendingDelete) {
+        pendingDeleteBytes.addAndGet(fileInfo.getSize());
+        ExecutorService executor = deleteExecutor;
+        if (executor != null) {
+            executor.execute(() -> deleteFileData(fileInfo, pendingDelete));
+        } else {
+            deleteFileData(fileInfo, pendingDelete);
+        }
+    }
+
+    /**
+     * With {@link DeleteStrategy#INCREMENTAL}: resume deletions of files' data that have not completed, e.g. because
+     * the deleting process crashed or Redis kept failing. Pending deletions are recorded in a Redis set (named
+     * {@code <metadata-hash-name>:pending-deletes}) until the file's data is gone; this method is called in background
+     * by {@link #init()} if {@link #getDeleteStrategy()} is {@link DeleteStrategy#INCREMENTAL}.
+     *
+     * @return number of deletions resumed
+     * @since 1.0.1
+     */
+    public int resumePendingDeletes() {
+        Set<byte[]> pendingDeletes;
+        try (Jedis jedis = getJedis()) {
+            pendingDeletes = jedis.smembers(pendingDeletesKey());
+        }
+        int result = 0;
+        for (byte[] pendingDelete : pendingDeletes) {
+            FileInfo fileInfo = FileInfo.newInstance(pendingDelete);
+            if (fileInfo != null) {
+                scheduleDeleteFileData(fileInfo, pendingDelete);
+                result++;
+            }
+        }
+        if (result > 0 && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Resumed deletion of data of " + result + " file(s)");
+        }
+        return result;
+    }
+
+    /**
+     * Remove a deleted file's data with {@code HDEL}s, each freeing at most {@link #getDeleteChunkBytes()} bytes, then
+     * remove the pending deletion record. Failures are retried with backoff, resuming from the last chunk deleted; the
+     * last retry frees whatever is left with one {@code UNLINK}. Should that also fail, the deletion stays recorded
+     * and is resumed by {@link #resumePendingDeletes()}.
+     *
+     * @param fileInfo
+     * @param pendingDelete
+     */
+    private void deleteFileData(FileInfo fileInfo, byte[] pendingDelete) {
+        long t1 = System.currentTimeMillis();
+        byte[] KEY = dataKeyFor(fileInfo);
+        byte[] KEY_PENDING_DELETES = pendingDeletesKey();
+        int blockSize = getBlockSize();
+        long remaining = fileInfo.getSize();
+        int numBlocks = isStringMode(fileInfo) ? 0 : (int) ((remaining + blockSize - 1) / blockSize);
+        int blocksPerChunk = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deleteChunkBytes / blockSize));
+        int blockNum = 0;
+        boolean done = false;
+        try {
+            for (int retry = 0; !done; retry++) {
+                try (Jedis jedis = getJedis()) {
+                    if (retry < DELETE_MAX_RETRIES) {
+                        while (blockNum < numBlocks) {
+                            byte[][] FIELDS = new byte[Math.min(blocksPerChunk, numBlocks - blockNum)][];
+                            for (int i = 0; i < FIELDS.length; i++) {
+                                FIELDS[i] = blockFieldFor(blockNum + i);
+                            }
+                            jedis.hdel(KEY, FIELDS);
+                            blockNum += FIELDS.length;
+                            long freed = Math.min(remaining, (long) FIELDS.length * blockSize);
+                            remaining -= freed;
+                            pendingDeleteBytes.addAndGet(-freed);
+                            deletedBytes.addAndGet(freed);
+                            if (LOGGER.isTraceEnabled()) {
+                                LOGGER.trace("deleteFileData(" + fileInfo.getName() + "/" + fileInfo.getId() + "): "
+                                        + blockNum + "/" + numBlocks + " blocks deleted");
+                            }
+                        }
+                        // whatever is left: a STRING value, or an (almost) empty hash
+                        jedis.del(KEY);
+                    } else {
+                        jedis.unlink(KEY);
+                    }
+                    jedis.srem(KEY_PENDING_DELETES, pendingDelete);
+                    done = true;
+                } catch (Exception e) {
+                    if (retry >= DELETE_MAX_RETRIES) {
+                        LOGGER.warn("Error while deleting data of file [" + fileInfo.getName() + "/"
+                                + fileInfo.getId() + "], deletion is left pending: " + e.getMessage(), e);
+                        break;
+                    }
+                    LOGGER.warn("Error while deleting data of file [" + fileInfo.getName() + "/" + fileInfo.getId()
+                            + "], retrying: " + e.getMessage());
+                    Thread.sleep(DELETE_RETRY_BACKOFF_MS << retry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pendingDeleteBytes.addAndGet(-remaining);
+            if (done) {
+                deletedBytes.addAndGet(remaining);
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            long t2 = System.currentTimeMillis();
+            LOGGER.debug("Data of file [" + fileInfo.getName() + "/" + fileInfo.getId() + "/" + fileInfo.getSize()
+                    + "] deleted in " + (t2 - t1) + " ms, " + pendingDeleteBytes.get() + " bytes pending");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The file's data key is removed with {@code UNLINK}, or {@code DEL} if {@link #getDeleteStrategy()} is
+     * {@link DeleteStrategy#DEL}.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void discardFileData(FileInfo fileInfo) {
+        byte[] KEY = dataKeyFor(fileInfo);
+        try (Jedis jedis = getJedis()) {
+            if (deleteStrategy == DeleteStrategy.DEL) {
+                jedis.del(KEY);
+            } else {
+                jedis.unlink(KEY);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -241,7 +1991,7 @@ public class RedisDirectory extends LucextDirectory {
         if (fileInfo == null) {
             throw new FileNotFoundException("File [" + name + "] not found!");
         }
-        return new LucextIndexInput(this, fileInfo);
+        return new LucextIndexInput(this, fileInfo, openStreamContext(fileInfo, context, false));
     }
 
     /**
@@ -251,10 +2001,10 @@ public class RedisDirectory extends LucextDirectory {
     public IndexOutput createOutput(String name, IOContext context) {
         FileInfo fileInfo = getFileInfo(name);
         if (fileInfo == null) {
-            fileInfo = FileInfo.newInstance(name);
-            updateFileInfo(fileInfo);
+            fileInfo = newFileInfo(name);
+            storeFileInfo(fileInfo, true);
         }
-        return new LucextIndexOutput(this, fileInfo);
+        return new LucextIndexOutput(this, fileInfo, openStreamContext(fileInfo, context, true));
     }
 
     /*----------------------------------------------------------------------*/
@@ -266,7 +2016,16 @@ public class RedisDirectory extends LucextDirectory {
     }
 
     /**
-     * Redis implementation of {@link Lock}.
+     * Redis implementation of {@link Lock}: a lease lock, stored in its own key (see {@link RedisDirectory}).
+     * The lock's value is the id of the lock's {@link FileInfo}, so that only the holder can renew or release it.
+     *
+     * <p>
+     * Writers before v1.0.1 lock by {@code HSETNX}-ing the lock's field (e.g. {@code write.lock}) of the metadata hash.
+     * For a rolling upgrade, the lease holder also sets that field, so that the two kinds of writers exclude each
+     * other. The field set by a lease holder is recognized by its id prefix {@link #LEASE_LOCK_ID_PREFIX}, and is
+     * taken over once the lease has expired; a field left behind by a crashed pre-v1.0.1 writer must be removed
+     * manually ({@code HDEL}).
+     * </p>
      * 
      * @author Thanh Nguyen <btnguyen2k@gmail.com>
      * @since 0.1.0
@@ -276,16 +2035,101 @@ public class RedisDirectory extends LucextDirectory {
             super(directory, fileName);
         }
 
+        private String lockKey() {
+            return strHashDirectoryMetadata + ":lock:" + getFileInfo().getName();
+        }
+
         protected boolean obtainLock() {
+            FileInfo fileInfo = getFileInfo();
+            if (!fileInfo.getId().startsWith(LEASE_LOCK_ID_PREFIX)) {
+                fileInfo.setId(LEASE_LOCK_ID_PREFIX + fileInfo.getId());
+            }
+            long leaseMs = getLockLeaseMs();
+            long now = System.currentTimeMillis();
+            try (Jedis jedis = getJedis()) {
+                String result = jedis.set(lockKey(), fileInfo.getId(), SetParams.setParams().nx().px(leaseMs));
+                if (!"OK".equalsIgnoreCase(result)) {
+                    return false;
+                }
+                if (!obtainLegacyLock(jedis)) {
+                    jedis.eval(SCRIPT_RELEASE_LOCK, Collections.singletonList(lockKey()),
+                            Collections.singletonList(fileInfo.getId()));
+                    return false;
+                }
+                startLease(now, leaseMs);
+                return true;
+            }
+        }
+
+        /**
+         * Set the lock's field of the metadata hash, as writers before v1.0.1 do. Must be called while holding the
+         * lease key.
+         */
+        private boolean obtainLegacyLock(Jedis jedis) {
             FileInfo fileInfo = getFileInfo();
             byte[] FIELD = metadataKeyFor(fileInfo);
+            Long result = jedis.hsetnx(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
+            if (result == null || result.longValue() != 1) {
+                FileInfo holder = FileInfo.newInstance(jedis.hget(hashDirectoryMetadata, FIELD));
+                if (holder != null && !holder.getId().startsWith(LEASE_LOCK_ID_PREFIX)) {
+                    // held by a pre-v1.0.1 writer (or left behind by one that crashed)
+                    return false;
+                }
+                // left behind by a lease holder whose lease has expired
+                jedis.hset(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
+            }
+            notifyLegacyLockChange(jedis);
+            return true;
+        }
+
+        /**
+         * Remove the lock's field of the metadata hash if it is still ours. Must be called while holding the lease
+         * key.
+         */
+        private void releaseLegacyLock(Jedis jedis) {
+            FileInfo fileInfo = getFileInfo();
+            byte[] FIELD = metadataKeyFor(fileInfo);
+            FileInfo holder = FileInfo.newInstance(jedis.hget(hashDirectoryMetadata, FIELD));
+            if (holder != null && StringUtils.equals(holder.getId(), fileInfo.getId())) {
+                jedis.hdel(hashDirectoryMetadata, FIELD);
+                notifyLegacyLockChange(jedis);
+            }
+        }
+
+        private void notifyLegacyLockChange(Jedis jedis) {
+            if (metadataCache != null) {
+                String name = getFileInfo().getName();
+                invalidateMetadataCache(name);
+                jedis.publish(getInvalidationChannel(), nodeId + " " + name);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean renewLease() {
             try (Jedis jedis = getJedis()) {
-                /*
-                 * Try to create an entry in the directory for the log file
-                 * Note: lock file has 0 size, so we just need to create file's metadata.
-                 */
-                Long result = jedis.hsetnx(hashDirectoryMetadata, FIELD, fileInfo.asBytes());
-                return result != null && result.longValue() == 1;
+                Object result = jedis.eval(SCRIPT_RENEW_LOCK, Collections.singletonList(lockKey()),
+                        Arrays.asList(getFileInfo().getId(), String.valueOf(getLeaseMs())));
+                return result instanceof Long && ((Long) result).longValue() == 1;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            stopLease();
+            if (isLocked()) {
+                try (Jedis jedis = getJedis()) {
+                    releaseLegacyLock(jedis);
+                    jedis.eval(SCRIPT_RELEASE_LOCK, Collections.singletonList(lockKey()),
+                            Collections.singletonList(getFileInfo().getId()));
+                } finally {
+                    markLock(false);
+                }
             }
         }
     }
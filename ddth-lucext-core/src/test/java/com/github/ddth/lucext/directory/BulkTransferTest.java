@@ -0,0 +1,122 @@
+package com.github.ddth.lucext.directory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.ddth.cacheadapter.cacheimpl.guava.GuavaCacheFactory;
+
+public class BulkTransferTest {
+
+    private GuavaCacheFactory cacheFactory;
+    private ByteBuffersDirectory src;
+    private InMemoryDirectory dest;
+    private BulkTransfer bulkTransfer;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFactory = new GuavaCacheFactory();
+        cacheFactory.init();
+        src = new ByteBuffersDirectory();
+        dest = (InMemoryDirectory) new InMemoryDirectory().setCacheFactory(cacheFactory).setCacheName("lucext")
+                .init();
+        bulkTransfer = new BulkTransfer().init();
+
+        try (IndexWriter indexWriter = new IndexWriter(src, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int i = 0; i < 10; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+                indexWriter.addDocument(doc);
+            }
+            indexWriter.commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        bulkTransfer.destroy();
+        dest.destroy();
+        src.close();
+        cacheFactory.destroy();
+    }
+
+    @Test
+    public void testTransferredFilesAreListed() throws IOException {
+        // file listing of the (empty) destination is now cached
+        assertEquals(0, dest.listAll().length);
+
+        BulkTransfer.Result result = bulkTransfer.transfer(src, dest);
+        assertEquals(src.listAll().length, result.getFilesCopied());
+
+        Set<String> destFiles = new HashSet<>(Arrays.asList(dest.listAll()));
+        for (String name : src.listAll()) {
+            assertTrue("File [" + name + "] not listed", destFiles.contains(name));
+        }
+        try (DirectoryReader reader = DirectoryReader.open(dest)) {
+            assertEquals(10, reader.numDocs());
+        }
+    }
+
+    /**
+     * Flip one byte in the middle of a file, so that it no longer matches its footer checksum.
+     */
+    private static void corrupt(ByteBuffersDirectory dir, String name) throws IOException {
+        byte[] data = new byte[(int) dir.fileLength(name)];
+        try (IndexInput input = dir.openInput(name, IOContext.READONCE)) {
+            input.readBytes(data, 0, data.length);
+        }
+        data[data.length / 2] ^= 0xFF;
+        dir.deleteFile(name);
+        try (IndexOutput output = dir.createOutput(name, IOContext.DEFAULT)) {
+            output.writeBytes(data, 0, data.length);
+        }
+    }
+
+    @Test
+    public void testFailedCopyLeavesNoBlocks() throws IOException {
+        dest.setBlockSize(64);
+        bulkTransfer.transfer(src, dest);
+
+        String name = null;
+        for (String file : src.listAll()) {
+            if (!file.startsWith("segments") && (name == null || src.fileLength(file) > src.fileLength(name))) {
+                name = file;
+            }
+        }
+        // only this file is copied again, all others are up-to-date
+        dest.deleteFile(name);
+        int numBlocks = dest.numBlocks();
+        corrupt(src, name);
+
+        try {
+            bulkTransfer.transfer(src, dest);
+            fail("Corrupted file [" + name + "] should not be copied");
+        } catch (CorruptIndexException e) {
+            // expected
+        }
+        assertFalse(Arrays.asList(dest.listAll()).contains(name));
+        assertEquals(numBlocks, dest.numBlocks());
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.ddth.lucext.directory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+
+/**
+ * In-memory {@link LucextDirectory} for tests. Locks are lease locks, emulating {@code SET NX PX}, against a clock
+ * that only moves when told to (see {@link Storage#advanceClock(long)}). If a cache is configured, file names are
+ * cached per metadata generation, as {@code CassandraDirectory} does.
+ */
+class InMemoryDirectory extends LucextDirectory {
+
+    private static class Lease {
+        final String owner;
+        volatile long expireAt;
+
+        Lease(String owner, long expireAt) {
+            this.owner = owner;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private final Map<String, FileInfo> metadata;
+    private final Map<String, byte[]> blocks;
+    private final Map<String, Lease> leases;
+    private final AtomicLong clock;
+
+    InMemoryDirectory() {
+        this(new InMemoryDirectory.Storage());
+    }
+
+    /**
+     * Directories created with the same storage share files and locks, like two processes sharing a backend.
+     */
+    InMemoryDirectory(Storage storage) {
+        this.metadata = storage.metadata;
+        this.blocks = storage.blocks;
+        this.leases = storage.leases;
+        this.clock = storage.clock;
+    }
+
+    static class Storage {
+        private final Map<String, FileInfo> metadata = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> blocks = new ConcurrentHashMap<>();
+        private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+        private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+        void advanceClock(long ms) {
+            clock.addAndGet(ms);
+        }
+    }
+
+    /**
+     * Let the lease of a lock expire right away, as if its holder had paused longer than the lease.
+     */
+    void expireLease(String lockName) {
+        Lease lease = leases.get(lockName);
+        if (lease != null) {
+            lease.expireAt = 0;
+        }
+    }
+
+    private static String blockKey(FileInfo fileInfo, int blockNum) {
+        return fileInfo.getId() + ":" + blockNum;
+    }
+
+    @Override
+    protected List<FileInfo> getAllFileInfo() {
+        List<FileInfo> result = new ArrayList<>();
+        metadata.values().forEach(fileInfo -> result.add(fileInfo.clone()));
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<String> listFileNames() {
+        String CACHE_KEY = cacheKeyAllFileNames();
+        List<String> result = getFromCache(CACHE_KEY, List.class);
+        if (result == null) {
+            result = new ArrayList<>(metadata.keySet());
+            putToCache(CACHE_KEY, result);
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    protected FileInfo getFileInfo(String name) {
+        FileInfo fileInfo = metadata.get(name);
+        return fileInfo != null ? fileInfo.clone() : null;
+    }
+
+    @Override
+    protected void removeFileInfo(FileInfo fileInfo) {
+        metadata.remove(fileInfo.getName());
+        bumpMetadataGeneration();
+    }
+
+    @Override
+    protected FileInfo updateFileInfo(FileInfo fileInfo) {
+        metadata.put(fileInfo.getName(), fileInfo.clone());
+        return fileInfo;
+    }
+
+    @Override
+    protected byte[] readFileBlock(FileInfo fileInfo, int blockNum) {
+        return blocks.get(blockKey(fileInfo, blockNum));
+    }
+
+    @Override
+    protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+        blocks.put(blockKey(fileInfo, blockNum), data.clone());
+    }
+
+    @Override
+    protected void discardFileData(FileInfo fileInfo) {
+        blocks.keySet().removeIf(key -> key.startsWith(fileInfo.getId() + ":"));
+    }
+
+    /**
+     * Number of data blocks in storage.
+     */
+    int numBlocks() {
+        return blocks.size();
+    }
+
+    @Override
+    public void deleteFile(String name) {
+        FileInfo fileInfo = metadata.remove(name);
+        if (fileInfo != null) {
+            discardFileData(fileInfo);
+            bumpMetadataGeneration();
+        }
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        FileInfo fileInfo = getFileInfo(name);
+        if (fileInfo == null) {
+            throw new FileNotFoundException("File [" + name + "] not found!");
+        }
+        return new LucextIndexInput(this, fileInfo);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) {
+        FileInfo fileInfo = newFileInfo(name);
+        updateFileInfo(fileInfo);
+        bumpMetadataGeneration();
+        return new LucextIndexOutput(this, fileInfo);
+    }
+
+    @Override
+    protected Lock createLock(String lockName) {
+        return new InMemoryLock(this, lockName);
+    }
+
+    private class InMemoryLock extends LucextLock {
+        InMemoryLock(LucextDirectory directory, String lockName) {
+            super(directory, lockName);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return clock.get();
+        }
+
+        @Override
+        protected boolean obtainLock() {
+            long leaseMs = getLockLeaseMs();
+            long now = clock.get();
+            String owner = getFileInfo().getId();
+            Lease lease = leases.compute(getFileInfo().getName(),
+                    (k, v) -> v == null || v.expireAt <= now ? new Lease(owner, now + leaseMs) : v);
+            boolean locked = StringUtils.equals(lease.owner, owner);
+            if (locked) {
+                startLease(now, leaseMs);
+            }
+            return locked;
+        }
+
+        @Override
+        protected boolean renewLease() {
+            long now = clock.get();
+            String owner = getFileInfo().getId();
+            Lease lease = leases.computeIfPresent(getFileInfo().getName(), (k, v) -> {
+                if (StringUtils.equals(v.owner, owner) && v.expireAt > now) {
+                    v.expireAt = now + getLeaseMs();
+                }
+                return v;
+            });
+            return lease != null && StringUtils.equals(lease.owner, owner) && lease.expireAt > now;
+        }
+
+        @Override
+        public void close() {
+            stopLease();
+            if (isLocked()) {
+                leases.computeIfPresent(getFileInfo().getName(),
+                        (k, v) -> StringUtils.equals(v.owner, getFileInfo().getId()) ? null : v);
+                markLock(false);
+            }
+        }
+    }
+}
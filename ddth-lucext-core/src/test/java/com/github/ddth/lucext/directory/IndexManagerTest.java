@@ -0,0 +1,118 @@
+package com.github.ddth.lucext.directory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexManagerTest {
+
+    private IndexManager indexManager;
+
+    @Before
+    public void setUp() throws IOException {
+        indexManager = new IndexManager(new ByteBuffersDirectory()).setBackgroundCommitIndexPeriodMs(0)
+                .setBackgroundRefreshIndexSearcherPeriodMs(0).setNrtIndexSearcher(true).init();
+    }
+
+    @After
+    public void tearDown() {
+        indexManager.destroy();
+    }
+
+    private void addDocument(String id) throws IOException {
+        Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new StringField("class", "test", Field.Store.NO));
+        indexManager.getIndexWriter().addDocument(doc);
+    }
+
+    private int countDocs(IndexSearcher searcher) throws IOException {
+        return searcher.count(new TermQuery(new Term("class", "test")));
+    }
+
+    @Test
+    public void testAcquiredSearcherSurvivesRefresh() throws IOException {
+        addDocument("1");
+        IndexSearcher searcher1 = indexManager.acquireIndexSearcher();
+        try {
+            assertEquals(1, countDocs(searcher1));
+
+            addDocument("2");
+            IndexSearcher searcher2 = indexManager.acquireIndexSearcher();
+            try {
+                assertNotSame(searcher1, searcher2);
+                assertEquals(2, countDocs(searcher2));
+                // the old searcher is still open and still sees its point-in-time view
+                assertEquals(1, countDocs(searcher1));
+                assertTrue(searcher1.getIndexReader().getRefCount() > 0);
+            } finally {
+                indexManager.releaseIndexSearcher(searcher2);
+            }
+        } finally {
+            indexManager.releaseIndexSearcher(searcher1);
+        }
+        assertEquals(0, searcher1.getIndexReader().getRefCount());
+    }
+
+    @Test
+    public void testSearcherNotRefreshedIfIndexUnchanged() throws IOException {
+        addDocument("1");
+        IndexSearcher searcher1 = indexManager.acquireIndexSearcher();
+        IndexSearcher searcher2 = indexManager.acquireIndexSearcher();
+        try {
+            assertSame(searcher1, searcher2);
+        } finally {
+            indexManager.releaseIndexSearcher(searcher1);
+            indexManager.releaseIndexSearcher(searcher2);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testGetIndexSearcherHoldsReferenceUntilSwappedOut() throws IOException {
+        addDocument("1");
+        IndexSearcher searcher1 = indexManager.getIndexSearcher();
+        // still usable: a reference is held by the IndexManager
+        assertEquals(1, countDocs(searcher1));
+        assertSame(searcher1, indexManager.getIndexSearcher());
+        assertTrue(searcher1.getIndexReader().getRefCount() > 0);
+
+        addDocument("2");
+        IndexSearcher searcher2 = indexManager.getIndexSearcher();
+        assertNotSame(searcher1, searcher2);
+        assertEquals(2, countDocs(searcher2));
+        // the swapped out searcher has been released
+        assertEquals(0, searcher1.getIndexReader().getRefCount());
+    }
+
+    @Test
+    public void testIndexWriterChangesAreDetected() throws IOException {
+        IndexWriter indexWriter = indexManager.getIndexWriter();
+        addDocument("1");
+        assertTrue(indexManager.isIndexChanged());
+        IndexSearcher searcher = indexManager.acquireIndexSearcher();
+        try {
+            assertEquals(1, countDocs(searcher));
+            assertEquals(1, indexWriter.getDocStats().numDocs);
+            assertFalse(indexManager.isIndexChanged());
+        } finally {
+            indexManager.releaseIndexSearcher(searcher);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.ddth.lucext.directory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Leases are checked against the clock of {@link InMemoryDirectory.Storage}, and heartbeats are driven by the tests:
+ * the lease is long enough that the background heartbeat never fires while a test runs.
+ */
+public class LeaseLockTest {
+
+    private final static long LEASE_MS = 60000;
+
+    private InMemoryDirectory.Storage storage;
+    private InMemoryDirectory dir1, dir2;
+
+    @Before
+    public void setUp() {
+        storage = new InMemoryDirectory.Storage();
+        dir1 = (InMemoryDirectory) new InMemoryDirectory(storage).setLockLeaseMs(LEASE_MS).init();
+        dir2 = (InMemoryDirectory) new InMemoryDirectory(storage).setLockLeaseMs(LEASE_MS).init();
+    }
+
+    @After
+    public void tearDown() {
+        dir1.destroy();
+        dir2.destroy();
+    }
+
+    @Test(expected = LockObtainFailedException.class)
+    public void testLockIsExclusive() throws Exception {
+        try (Lock lock = dir1.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            assertNotNull(lock);
+            dir2.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+        }
+    }
+
+    @Test
+    public void testLeaseIsRenewed() throws Exception {
+        try (LucextDirectory.LucextLock lock = (LucextDirectory.LucextLock) dir1
+                .obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            for (int i = 0; i < 3; i++) {
+                storage.advanceClock(LEASE_MS * 2 / 3);
+                lock.heartbeat();
+            }
+            // the lease started more than LEASE_MS ago, but has been renewed since
+            lock.ensureValid();
+            try {
+                dir2.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+                fail("Lock should still be held");
+            } catch (LockObtainFailedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testTakeOverAfterHolderCrashes() throws Exception {
+        LucextDirectory.LucextLock lock1 = (LucextDirectory.LucextLock) dir1.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+        // the holder "crashes": its lease is not renewed any more
+        lock1.stopLease();
+        storage.advanceClock(LEASE_MS);
+        try {
+            lock1.ensureValid();
+            fail("Lease should have expired");
+        } catch (AlreadyClosedException e) {
+            // expected
+        }
+
+        try (Lock lock2 = dir2.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            lock2.ensureValid();
+            // the former holder must not release the new holder's lock
+            lock1.close();
+            lock2.ensureValid();
+            try {
+                dir1.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+                fail("Lock should be held by the new holder");
+            } catch (LockObtainFailedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testHolderDetectsLostLease() throws Exception {
+        LucextDirectory.LucextLock lock1 = (LucextDirectory.LucextLock) dir1.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+        // the holder pauses longer than its lease, another process takes over meanwhile
+        dir1.expireLease(IndexWriter.WRITE_LOCK_NAME);
+        try (Lock lock2 = dir2.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            lock2.ensureValid();
+            // next heartbeat of the former holder finds out the lease is lost
+            lock1.heartbeat();
+            assertFalse(lock1.isLocked());
+            try {
+                lock1.ensureValid();
+                fail("Lease should have been lost");
+            } catch (AlreadyClosedException e) {
+                // expected
+            }
+        } finally {
+            lock1.close();
+        }
+    }
+
+    @Test
+    public void testReleaseAndReacquire() throws Exception {
+        Lock lock1 = dir1.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+        lock1.close();
+        try (Lock lock2 = dir2.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            lock2.ensureValid();
+            assertTrue(((LucextDirectory.LucextLock) lock2).isLocked());
+        }
+    }
+}
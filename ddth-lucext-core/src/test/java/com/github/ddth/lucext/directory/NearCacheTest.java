@@ -0,0 +1,87 @@
+package com.github.ddth.lucext.directory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NearCacheTest {
+
+    /*
+     * "AaAa", "AaBB", "BBAa" and "BBBB" share the same hash code, hence the same segment.
+     */
+    private final static String KEY1 = "AaAa", KEY2 = "AaBB", KEY3 = "BBAa";
+
+    /*
+     * Each segment holds 2 entries of 100 bytes (weight: 100 + 16).
+     */
+    private final static long MAX_BYTES = 16 * 2 * (100 + 16);
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        NearCache cache = new NearCache(MAX_BYTES, 0);
+        cache.put(KEY1, new byte[100], true);
+        cache.put(KEY2, new byte[100], true);
+        assertNotNull(cache.get(KEY1));
+
+        cache.put(KEY3, new byte[100], true);
+        assertNotNull(cache.get(KEY1));
+        assertNull(cache.get(KEY2));
+        assertNotNull(cache.get(KEY3));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testWeightStaysWithinBudget() {
+        NearCache cache = new NearCache(MAX_BYTES, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, new byte[100], true);
+        }
+        assertTrue(cache.weight() <= MAX_BYTES);
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    public void testOversizedEntryIsNotCached() {
+        NearCache cache = new NearCache(MAX_BYTES, 0);
+        cache.put(KEY1, new byte[100], true);
+        cache.put(KEY1, new byte[1000], true);
+        assertNull(cache.get(KEY1));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testMutableEntriesNotCachedWithoutTtl() {
+        NearCache cache = new NearCache(MAX_BYTES, 0);
+        assertFalse(cache.isCachingMutable());
+        cache.put(KEY1, "value", false);
+        assertNull(cache.get(KEY1));
+    }
+
+    @Test
+    public void testMutableEntriesExpire() throws InterruptedException {
+        NearCache cache = new NearCache(1024 * 1024, 50);
+        assertTrue(cache.isCachingMutable());
+        cache.put(KEY1, "mutable", false);
+        cache.put(KEY2, "immutable", true);
+        assertEquals("mutable", cache.get(KEY1));
+
+        Thread.sleep(100);
+        assertNull(cache.get(KEY1));
+        assertEquals("immutable", cache.get(KEY2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPutNullRemoves() {
+        NearCache cache = new NearCache(MAX_BYTES, 0);
+        cache.put(KEY1, new byte[100], true);
+        cache.put(KEY1, null, true);
+        assertNull(cache.get(KEY1));
+        assertEquals(0, cache.weight());
+    }
+}
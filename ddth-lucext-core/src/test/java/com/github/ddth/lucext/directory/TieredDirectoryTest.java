@@ -0,0 +1,150 @@
+package com.github.ddth.lucext.directory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TieredDirectoryTest {
+
+    private Path localPath;
+    private ExecutorService uploadExecutor;
+
+    /*
+     * Block writes to the remote directory wait for this latch, once uploadStarted is counted down.
+     */
+    private CountDownLatch uploadStarted, uploadReleased;
+
+    private InMemoryDirectory remote;
+    private TieredDirectory dir;
+
+    @Before
+    public void setUp() throws IOException {
+        localPath = Files.createTempDirectory("lucext-tiered");
+        uploadExecutor = Executors.newSingleThreadExecutor();
+        uploadStarted = new CountDownLatch(1);
+        uploadReleased = new CountDownLatch(0);
+        remote = (InMemoryDirectory) new InMemoryDirectory() {
+            @Override
+            protected void writeFileBlock(FileInfo fileInfo, int blockNum, byte[] data) {
+                uploadStarted.countDown();
+                try {
+                    uploadReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeFileBlock(fileInfo, blockNum, data);
+            }
+        }.init();
+        dir = new TieredDirectory(FSDirectory.open(localPath), remote).setUploadExecutor(uploadExecutor).init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        uploadReleased.countDown();
+        dir.destroy();
+        uploadExecutor.shutdownNow();
+        IOUtils.rm(localPath);
+    }
+
+    private void write(String name, int size) throws IOException {
+        try (IndexOutput output = dir.createOutput(name, IOContext.DEFAULT)) {
+            for (int i = 0; i < size; i++) {
+                output.writeByte((byte) i);
+            }
+        }
+    }
+
+    /**
+     * Wait for all scheduled uploads, including cancelled ones.
+     */
+    private void drainUploads() throws InterruptedException {
+        uploadExecutor.shutdown();
+        assertTrue(uploadExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSyncUploads() throws IOException {
+        write("_0.fdt", 100);
+        dir.sync(Collections.singleton("_0.fdt"));
+        assertEquals(0, dir.getNumPendingUploads());
+        assertArrayEquals(new String[] { "_0.fdt" }, remote.listAll());
+        assertEquals(100, remote.fileLength("_0.fdt"));
+    }
+
+    @Test
+    public void testEvictedFileIsReadFromRemote() throws IOException {
+        dir.setLocalSizeBudget(0);
+        write("_0.fdt", 100);
+        dir.sync(Collections.singleton("_0.fdt"));
+        assertEquals(0, dir.getLocalSize());
+        assertFalse(Arrays.asList(dir.getLocalDirectory().listAll()).contains("_0.fdt"));
+        try (IndexInput input = dir.openInput("_0.fdt", IOContext.DEFAULT)) {
+            assertEquals(100, input.length());
+            input.seek(42);
+            assertEquals(42, input.readByte());
+        }
+    }
+
+    @Test
+    public void testDeleteDuringUpload() throws Exception {
+        uploadReleased = new CountDownLatch(1);
+        write("_0.fdt", 100);
+        assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+
+        // e.g. IndexWriter deletes per-segment files right after building the compound file
+        CompletableFuture<Void> deletion = CompletableFuture.runAsync(() -> {
+            try {
+                dir.deleteFile("_0.fdt");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse("deleteFile must wait for the running upload", deletion.isDone());
+        uploadReleased.countDown();
+        deletion.get(10, TimeUnit.SECONDS);
+        drainUploads();
+
+        assertEquals(0, remote.listAll().length);
+        assertEquals(0, dir.listAll().length);
+        assertEquals(0, dir.getNumPendingUploads());
+    }
+
+    @Test
+    public void testDeleteBeforeUpload() throws Exception {
+        uploadReleased = new CountDownLatch(1);
+        write("_0.fdt", 100);
+        assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+        // queued behind the running upload of _0.fdt
+        write("_0.fdx", 100);
+
+        dir.deleteFile("_0.fdx");
+        uploadReleased.countDown();
+        drainUploads();
+
+        assertArrayEquals(new String[] { "_0.fdt" }, remote.listAll());
+        assertArrayEquals(new String[] { "_0.fdt" }, dir.listAll());
+        assertEquals(0, dir.getNumPendingUploads());
+    }
+}
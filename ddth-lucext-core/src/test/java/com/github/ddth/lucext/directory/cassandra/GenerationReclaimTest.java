@@ -0,0 +1,110 @@
+package com.github.ddth.lucext.directory.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.ddth.lucext.directory.FileInfo;
+
+/**
+ * Decisions of {@link CassandraDirectory#reclaimGenerations()}, without a Cassandra cluster.
+ */
+public class GenerationReclaimTest {
+
+    private final static long PERIOD_MS = 1000;
+
+    /*
+     * "now" is in generation 10.
+     */
+    private final static long NOW = 10 * PERIOD_MS + 500;
+    private final static long NEWEST = 10;
+
+    private final static Set<Long> NONE = Collections.emptySet();
+
+    private CassandraDirectory dir;
+
+    @Before
+    public void setUp() {
+        dir = new CassandraDirectory(null).setGenerationPeriodMs(PERIOD_MS);
+    }
+
+    @Test
+    public void testGenerationOf() {
+        assertEquals(12, CassandraDirectory.generationOf("g12.abc"));
+        assertEquals(-1, CassandraDirectory.generationOf("b16.abc"));
+        assertEquals(-1, CassandraDirectory.generationOf("abc"));
+    }
+
+    @Test
+    public void testUnreferencedOldGenerationIsReclaimed() {
+        assertTrue(dir.isReclaimable(5, NEWEST, NOW, NONE, NONE));
+    }
+
+    @Test
+    public void testReferencedGenerationIsKept() {
+        assertFalse(dir.isReclaimable(5, NEWEST, NOW, Collections.singleton(5L), NONE));
+    }
+
+    @Test
+    public void testNewestGenerationIsKept() {
+        assertFalse(dir.isReclaimable(NEWEST, NEWEST, NOW, NONE, NONE));
+    }
+
+    @Test
+    public void testGracePeriod() {
+        // generation 9 ended less than one period ago
+        assertFalse(dir.isReclaimable(9, NEWEST, NOW, NONE, NONE));
+        assertTrue(dir.isReclaimable(8, NEWEST, NOW, NONE, NONE));
+    }
+
+    @Test
+    public void testPrecreatedGenerationIsKept() {
+        // generation 11 is created ahead of its start
+        assertFalse(dir.isReclaimable(11, 11, NOW, NONE, NONE));
+        assertFalse(dir.isReclaimable(11, 12, NOW, NONE, NONE));
+    }
+
+    @Test
+    public void testInFlightWriteKeepsGeneration() {
+        // a file of generation 5 is being written (e.g. by BulkTransfer): blocks first, metadata row last
+        FileInfo fileInfo = FileInfo.newInstance("_0.cfs").setId("g5.abc");
+        dir.pinGeneration(fileInfo);
+        Set<Long> pinned = dir.pinnedGenerations();
+        assertEquals(Collections.singleton(5L), pinned);
+        assertFalse(dir.isReclaimable(5, NEWEST, NOW, NONE, pinned));
+
+        // metadata row written: the file now references the generation
+        dir.unpinGeneration(fileInfo);
+        assertTrue(dir.pinnedGenerations().isEmpty());
+        assertFalse(dir.isReclaimable(5, NEWEST, NOW, Collections.singleton(5L), dir.pinnedGenerations()));
+    }
+
+    @Test
+    public void testFailedWriteReleasesGeneration() throws IOException {
+        // BulkTransfer failed half-way: the file's data is discarded and its metadata row is never written
+        FileInfo fileInfo = FileInfo.newInstance("_0.cfs").setId("g5.abc");
+        dir.pinGeneration(fileInfo);
+        dir.discardFileData(fileInfo);
+        assertTrue(dir.pinnedGenerations().isEmpty());
+        assertTrue(dir.isReclaimable(5, NEWEST, NOW, NONE, dir.pinnedGenerations()));
+    }
+
+    @Test
+    public void testPinsOfDifferentFilesInSameGeneration() {
+        FileInfo file1 = FileInfo.newInstance("_0.cfs").setId("g5.abc");
+        FileInfo file2 = FileInfo.newInstance("_1.cfs").setId("g5.def");
+        dir.pinGeneration(file1);
+        dir.pinGeneration(file2);
+        dir.unpinGeneration(file1);
+        assertFalse(dir.isReclaimable(5, NEWEST, NOW, NONE, dir.pinnedGenerations()));
+        dir.unpinGeneration(file2);
+        assertTrue(dir.isReclaimable(5, NEWEST, NOW, NONE, dir.pinnedGenerations()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.ddth.lucext.directory.redis;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.lucext.directory.FileInfo;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class RedisDirectoryAsyncTest {
+
+    /**
+     * No Redis server is needed: every connection attempt fails right away, so every command completes
+     * exceptionally; what matters is that no future is left pending.
+     */
+    private static class UnreachableJedisConnector extends JedisConnector {
+        @Override
+        public Jedis getJedis() {
+            throw new JedisConnectionException("No Redis server in unit tests");
+        }
+    }
+
+    @Test
+    public void testNoFutureLeftPendingAcrossDestroy() throws Exception {
+        RedisDirectory dir = new RedisDirectory(new UnreachableJedisConnector());
+        dir.setAsyncConnections(2);
+        dir.init();
+
+        FileInfo fileInfo = FileInfo.newInstance("test");
+        List<CompletableFuture<byte[]>> futures = new CopyOnWriteArrayList<>();
+        int numThreads = 4;
+        CountDownLatch started = new CountDownLatch(numThreads);
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread(() -> {
+                started.countDown();
+                for (int n = 0; n < 2000; n++) {
+                    futures.add(dir.readFileBlockAsync(fileInfo, n));
+                }
+            });
+            threads[i].start();
+        }
+        started.await();
+        dir.destroy();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        for (CompletableFuture<byte[]> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // expected: no Redis server
+            } catch (TimeoutException e) {
+                fail("Async command left pending after destroy()");
+            }
+        }
+        assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    @Test
+    public void testSubmitAfterDestroyCompletes() throws Exception {
+        RedisDirectory dir = new RedisDirectory(new UnreachableJedisConnector());
+        dir.init();
+        dir.destroy();
+        CompletableFuture<byte[]> future = dir.readFileBlockAsync(FileInfo.newInstance("test"), 0);
+        assertTrue(future.isDone());
+        assertTrue(future.isCompletedExceptionally());
+    }
+}
@@ -37,11 +37,15 @@ public class QndIndexManager {
 
                 Thread.sleep(10000);
 
-                IndexSearcher is = indexManage.getIndexSearcher();
-                TermQuery query = new TermQuery(new Term("class", "test"));
-                TopDocs result = is.search(query, 100);
-                System.out.println("Is changed: " + indexManage.isIndexChanged());
-                System.out.println("Num docs  : " + result.totalHits);
+                IndexSearcher is = indexManage.acquireIndexSearcher();
+                try {
+                    TermQuery query = new TermQuery(new Term("class", "test"));
+                    TopDocs result = is.search(query, 100);
+                    System.out.println("Is changed: " + indexManage.isIndexChanged());
+                    System.out.println("Num docs  : " + result.totalHits);
+                } finally {
+                    indexManage.releaseIndexSearcher(is);
+                }
             }
         }
     }
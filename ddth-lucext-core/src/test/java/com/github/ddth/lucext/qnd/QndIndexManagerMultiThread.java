@@ -50,11 +50,15 @@ public class QndIndexManagerMultiThread {
                 Thread searcher = new Thread(() -> {
                     while (true) {
                         try {
-                            IndexSearcher is = indexManage.getIndexSearcher();
-                            TermQuery query = new TermQuery(new Term("class", "test"));
-                            TopDocs result = is.search(query, 1);
-                            System.out.println(System.identityHashCode(is) + " - Total hits: "
-                                    + result.totalHits);
+                            IndexSearcher is = indexManage.acquireIndexSearcher();
+                            try {
+                                TermQuery query = new TermQuery(new Term("class", "test"));
+                                TopDocs result = is.search(query, 1);
+                                System.out.println(System.identityHashCode(is) + " - Total hits: "
+                                        + result.totalHits);
+                            } finally {
+                                indexManage.releaseIndexSearcher(is);
+                            }
                             Thread.sleep(random.nextInt(102));
                         } catch (Exception e) {
                             e.printStackTrace();
@@ -61,10 +61,14 @@ public class QndIndexSpeed {
                 System.out.println("Write " + counter.get() + " items in " + d + " ms ("
                         + Math.round(counter.get() * 10000.0 / d) / 10.0 + " items/s)");
 
-                IndexSearcher is = indexManage.getIndexSearcher();
-                TermQuery query = new TermQuery(new Term("class", "test"));
-                TopDocs result = is.search(query, 1);
-                System.out.println("Written items: " + result.totalHits);
+                IndexSearcher is = indexManage.acquireIndexSearcher();
+                try {
+                    TermQuery query = new TermQuery(new Term("class", "test"));
+                    TopDocs result = is.search(query, 1);
+                    System.out.println("Written items: " + result.totalHits);
+                } finally {
+                    indexManage.releaseIndexSearcher(is);
+                }
             }
         }
     }
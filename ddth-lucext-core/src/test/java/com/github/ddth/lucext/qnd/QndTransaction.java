@@ -19,10 +19,14 @@ import java.io.IOException;
 public class QndTransaction {
 
     private static void countDocs(IndexManager indexManager) throws IOException {
-        IndexSearcher is = indexManager.getIndexSearcher();
-        TermQuery query = new TermQuery(new Term("class", "test"));
-        TopDocs result = is.search(query, 100);
-        System.out.println("Num docs  : " + result.totalHits);
+        IndexSearcher is = indexManager.acquireIndexSearcher();
+        try {
+            TermQuery query = new TermQuery(new Term("class", "test"));
+            TopDocs result = is.search(query, 100);
+            System.out.println("Num docs  : " + result.totalHits);
+        } finally {
+            indexManager.releaseIndexSearcher(is);
+        }
     }
 
     public static void main(String[] args) throws Exception {
@@ -0,0 +1,54 @@
+package com.github.ddth.lucext.qnd.redis;
+
+import ch.qos.logback.classic.Level;
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.lucext.directory.redis.RedisDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+
+/**
+ * Two {@link RedisDirectory} instances (as if on two nodes) share one index, with in-process metadata cache enabled.
+ * Mutations made via one instance must be visible to the other one.
+ */
+public class QndRedisMetadataInvalidation extends BaseQndRedis {
+
+    private static void printState(String title, RedisDirectory dir) throws Exception {
+        System.out.println(title + ": " + Arrays.toString(dir.listAll()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        initLoggers(Level.INFO);
+
+        try (JedisConnector jc = getJedisConnector()) {
+            try (Jedis jedis = jc.getJedis()) {
+                jedis.flushAll();
+            }
+
+            try (RedisDirectory DIR1 = new RedisDirectory(jc); RedisDirectory DIR2 = new RedisDirectory(jc)) {
+                DIR1.setMetadataCacheEnabled(true).init();
+                DIR2.setMetadataCacheEnabled(true).init();
+                Thread.sleep(1000); // wait for subscriptions
+
+                printState("DIR2 (empty)", DIR2);
+
+                try (IndexOutput output = DIR1.createOutput("file1", IOContext.DEFAULT)) {
+                    output.writeString("Hello world");
+                }
+                Thread.sleep(100);
+                printState("DIR2 (file1 created via DIR1)", DIR2);
+                System.out.println("DIR2 file1 length: " + DIR2.fileLength("file1"));
+
+                DIR1.rename("file1", "file2");
+                Thread.sleep(100);
+                printState("DIR2 (file1 renamed to file2 via DIR1)", DIR2);
+
+                DIR1.deleteFile("file2");
+                Thread.sleep(100);
+                printState("DIR2 (file2 deleted via DIR1)", DIR2);
+            }
+        }
+    }
+}